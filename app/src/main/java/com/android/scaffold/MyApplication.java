@@ -1,17 +1,81 @@
 package com.android.scaffold;
 
+import android.content.Context;
+
+import com.android.scaffold.db.DatabaseHelper;
+import com.android.scaffold.db.maintenance.DatabaseMaintenanceScheduler;
+import com.android.scaffold.db.service.ServiceLocator;
+import com.android.scaffold.http.api.PocketMedicalApi;
+import com.android.scaffold.startup.DeferredInitializer;
+import com.android.scaffold.startup.StartupTracer;
 import com.wgl.android.library.baseapp.BaseApplication;
 
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
 
 /**
  * Created by wuganlin on 2017/4/1.
  */
 
 public class MyApplication extends BaseApplication {
+    public static final String PHASE_COLD_START = "coldStart";
+    public static final String PHASE_APPLICATION_ON_CREATE = "MyApplication.onCreate";
+    public static final String PHASE_BASE_APPLICATION_ON_CREATE = "BaseApplication.onCreate";
+    public static final String PHASE_WARM_DATABASE = "deferred.openDatabase";
+    public static final String PHASE_WARM_HTTP = "deferred.createPocketMedicalService";
+    public static final String PHASE_ARCHIVE_CONTACTS = "deferred.archiveContacts";
+    public static final String PHASE_SCHEDULE_MAINTENANCE = "deferred.scheduleMaintenance";
+    /**
+     * 超过该时长未更新的联系人迁入冷库
+     */
+    private static final long CONTACT_HOT_MILLIS = TimeUnit.DAYS.toMillis(90);
+
+    @Override
+    protected void attachBaseContext(Context base) {
+        //冷启动计时从这里开始，到MainActivity首帧结束
+        StartupTracer.mark(PHASE_COLD_START);
+        super.attachBaseContext(base);
+    }
 
     @Override
     public void onCreate() {
+        StartupTracer.begin(PHASE_APPLICATION_ON_CREATE);
+        StartupTracer.begin(PHASE_BASE_APPLICATION_ON_CREATE);
         super.onCreate();
+        StartupTracer.end(PHASE_BASE_APPLICATION_ON_CREATE);
+        //数据库和网络单例不是首帧必需的，主线程空闲后在后台预热
+        final Context context = getApplicationContext();
+        DeferredInitializer.add(PHASE_WARM_DATABASE, new Runnable() {
+            @Override
+            public void run() {
+                DatabaseHelper.getHelper(context).getWritableDatabase();
+            }
+        });
+        DeferredInitializer.add(PHASE_WARM_HTTP, new Runnable() {
+            @Override
+            public void run() {
+                PocketMedicalApi.getInstance().getService();
+            }
+        });
+        DeferredInitializer.add(PHASE_ARCHIVE_CONTACTS, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ServiceLocator.getContactService(context).archiveStale(CONTACT_HOT_MILLIS);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        DeferredInitializer.add(PHASE_SCHEDULE_MAINTENANCE, new Runnable() {
+            @Override
+            public void run() {
+                //上次运行留下的碎片和统计信息在空闲时处理
+                DatabaseMaintenanceScheduler.getInstance(context).schedule();
+            }
+        });
+        StartupTracer.end(PHASE_APPLICATION_ON_CREATE);
     }
 
 }
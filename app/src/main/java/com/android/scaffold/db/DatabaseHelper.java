@@ -4,12 +4,19 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
+import com.android.scaffold.db.backup.DatabaseSnapshot;
 import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.db.service.ServiceLocator;
+import com.android.scaffold.startup.StartupTracer;
 import com.j256.ormlite.android.apptools.OrmLiteSqliteOpenHelper;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.TableUtils;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Created by wuganlin on 2017/3/23.
@@ -17,32 +24,72 @@ import java.sql.SQLException;
 
 public class DatabaseHelper extends OrmLiteSqliteOpenHelper {
 
-    private static DatabaseHelper instance;
+    private static volatile DatabaseHelper instance;
 
     private static final String NAME = "ormlite_app.db";
 
-    private static final Integer VERSION = 1;
+    /**
+     * 冷数据所在的数据库文件，需要时ATTACH到主库，schema名为ARCHIVE_SCHEMA
+     */
+    private static final String ARCHIVE_NAME = "ormlite_app_archive.db";
+
+    public static final String ARCHIVE_SCHEMA = "archive";
+
+    private static final Integer VERSION = 3;
+
+    /**
+     * 没有通过实体写入updated_at的UPDATE（例如PreparedUpdate）由触发器补上当前时间，
+     * 触发器内的UPDATE不会再次触发（recursive_triggers默认关闭）
+     */
+    private static final String CREATE_TOUCH_TRIGGER = "CREATE TRIGGER IF NOT EXISTS tb_contact_touch"
+            + " AFTER UPDATE ON tb_contact FOR EACH ROW"
+            + " WHEN NEW." + Contact.COLUMN_UPDATED_AT + " IS OLD." + Contact.COLUMN_UPDATED_AT
+            + " BEGIN UPDATE tb_contact SET " + Contact.COLUMN_UPDATED_AT
+            + " = CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER) WHERE rowid = NEW.rowid; END";
+
+    private final Context mContext;
+
+    private boolean mArchiveAttached;
+
+    /**
+     * 本实例已经建过冷库表的表名，避免每次使用冷库都执行建表语句
+     */
+    private final Set<String> mArchiveTables = new HashSet<>();
+
+    /**
+     * 本次打开时新建了数据库，onOpen中切换auto_vacuum
+     */
+    private boolean mCreated;
 
 
     private DatabaseHelper(Context context) {
         super(context, NAME, null, VERSION);
+        mContext = context.getApplicationContext();
     }
 
     public static DatabaseHelper getHelper(Context context) {
-        if (instance == null) {
+        //restore会替换实例，不能用holder类，volatile读一次即可
+        DatabaseHelper helper = instance;
+        if (helper == null) {
             synchronized (DatabaseHelper.class) {
-                if (instance == null) {
-                    instance = new DatabaseHelper(context);
+                helper = instance;
+                if (helper == null) {
+                    StartupTracer.begin("DatabaseHelper.getHelper");
+                    helper = new DatabaseHelper(context);
+                    instance = helper;
+                    StartupTracer.end("DatabaseHelper.getHelper");
                 }
             }
         }
-        return instance;
+        return helper;
     }
 
     @Override
     public void onCreate(SQLiteDatabase database, ConnectionSource connectionSource) {
+        mCreated = true;
         try {
             TableUtils.createTableIfNotExists(connectionSource, Contact.class);
+            database.execSQL(CREATE_TOUCH_TRIGGER);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -53,8 +100,164 @@ public class DatabaseHelper extends OrmLiteSqliteOpenHelper {
         Log.e("onUpgrade", "oldVersion=" + oldVersion + ",newVersion=" + newVersion);
         switch (oldVersion) {
             case 1:
+                //version 2: 增加updated_at，已有数据视为刚写入，由归档任务按时间逐步迁出
+                database.execSQL("ALTER TABLE tb_contact ADD COLUMN " + Contact.COLUMN_UPDATED_AT + " BIGINT");
+                database.execSQL("UPDATE tb_contact SET " + Contact.COLUMN_UPDATED_AT + " = ?",
+                        new Object[]{System.currentTimeMillis()});
+                database.execSQL("CREATE INDEX IF NOT EXISTS tb_contact_updated_at_idx ON tb_contact ("
+                        + Contact.COLUMN_UPDATED_AT + ")");
+            case 2:
+                //version 3: 任何UPDATE都刷新updated_at
+                database.execSQL(CREATE_TOUCH_TRIGGER);
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (mCreated) {
+            mCreated = false;
+            //auto_vacuum只能在建表前设置，之后要VACUUM才生效；打开时已经建了android_metadata，
+            //所以在新建后立刻VACUUM一次，此时只有空表，之后维护任务只做incremental_vacuum
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+        }
+    }
+
+    /**
+     * 把冷数据库ATTACH到主库连接上，已ATTACH时直接返回。
+     * ATTACH不能在事务中执行
+     */
+    public synchronized void attachArchive() {
+        if (mArchiveAttached) {
+            return;
+        }
+        SQLiteDatabase database = getWritableDatabase();
+        String path = mContext.getDatabasePath(ARCHIVE_NAME).getAbsolutePath();
+        database.execSQL("ATTACH DATABASE ? AS " + ARCHIVE_SCHEMA, new Object[]{path});
+        mArchiveAttached = true;
+    }
+
+    /**
+     * 解除ATTACH，冷数据库文件保留
+     */
+    public synchronized void detachArchive() {
+        if (!mArchiveAttached) {
+            return;
+        }
+        getWritableDatabase().execSQL("DETACH DATABASE " + ARCHIVE_SCHEMA);
+        mArchiveAttached = false;
+    }
+
+    public synchronized boolean isArchiveAttached() {
+        return mArchiveAttached;
+    }
 
+    public synchronized boolean isArchiveTableEnsured(String table) {
+        return mArchiveTables.contains(table);
+    }
+
+    public synchronized void setArchiveTableEnsured(String table) {
+        mArchiveTables.add(table);
+    }
+
+    /**
+     * 冷数据库是否已ATTACH或者文件已存在，不会创建冷数据库
+     */
+    public synchronized boolean hasArchive() {
+        return mArchiveAttached || mContext.getDatabasePath(ARCHIVE_NAME).exists();
+    }
+
+    /**
+     * 在线生成快照，期间读写照常进行。冷数据库存在时一起生成快照，
+     * 写到getArchiveSnapshot(target)，与主库是同一时刻的状态
+     *
+     * @param target   快照文件
+     * @param listener 进度回调，在调用线程上执行，可为null
+     * @throws IOException IOException异常
+     */
+    public void snapshot(File target, DatabaseSnapshot.ProgressListener listener) throws IOException {
+        File source = mContext.getDatabasePath(NAME);
+        File archiveTarget = getArchiveSnapshot(target);
+        if (!hasArchive()) {
+            DatabaseSnapshot.snapshot(getWritableDatabase(), source, target, listener);
+            if (!hasArchive()) {
+                //快照时没有冷库，删掉之前留下的冷库快照，恢复时据此删除冷库
+                archiveTarget.delete();
+                return;
+            }
+            //快照期间第一次归档，主库快照可能已缺少迁出的行，连同冷库重新生成
+        }
+        DatabaseSnapshot.snapshot(getWritableDatabase(), new File[]{source, mContext.getDatabasePath(ARCHIVE_NAME)},
+                new File[]{target, archiveTarget}, listener);
+    }
+
+    /**
+     * 快照对应的冷数据库快照文件，快照时没有冷库则不存在
+     *
+     * @param snapshot 快照文件
+     * @return 冷数据库快照文件
+     */
+    public static File getArchiveSnapshot(File snapshot) {
+        return new File(snapshot.getPath() + "-archive");
+    }
+
+    /**
+     * 用快照替换主库和冷库。会关闭当前的helper并清空ServiceLocator的缓存，
+     * 之前拿到的helper和Dao都不能再用，需要重新获取；快照校验失败时原数据库保持不变。
+     * 快照不含冷库时删除现有的冷库，否则其中的行会在包含冷库的查询中出现
+     *
+     * @param context  context
+     * @param snapshot 快照文件
+     * @throws IOException IOException异常
+     */
+    public static void restore(Context context, File snapshot) throws IOException {
+        File target = context.getDatabasePath(NAME);
+        File archiveSnapshot = getArchiveSnapshot(snapshot);
+        File archive = context.getDatabasePath(ARCHIVE_NAME);
+        try {
+            synchronized (DatabaseHelper.class) {
+                closeInstance();
+                if (archiveSnapshot.exists()) {
+                    DatabaseSnapshot.restore(new File[]{snapshot, archiveSnapshot}, new File[]{target, archive});
+                } else {
+                    DatabaseSnapshot.restore(snapshot, target);
+                    DatabaseSnapshot.delete(archive);
+                }
+            }
+        } finally {
+            //ServiceLocator创建实例时会拿DatabaseHelper的锁，必须在锁外清空，否则两个锁顺序相反
+            ServiceLocator.clear();
+        }
+    }
+
+    /**
+     * 关闭并丢弃单例，清空ServiceLocator的缓存，下次getHelper时重新打开数据库
+     */
+    public static void releaseHelper() {
+        synchronized (DatabaseHelper.class) {
+            closeInstance();
+        }
+        ServiceLocator.clear();
+    }
+
+    /**
+     * 在DatabaseHelper.class锁内调用
+     */
+    private static void closeInstance() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            mArchiveAttached = false;
+            mArchiveTables.clear();
         }
+        super.close();
     }
 
 
@@ -0,0 +1,338 @@
+package com.android.scaffold.db.backup;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+/**
+ * 在线快照：应用运行期间复制数据库文件，读写不中断。
+ * <p>
+ * 先做一次WAL checkpoint，把已提交的数据写回主文件，没有全部写回时重试，仍不成功则失败；然后按固定页数分步，
+ * 用FileChannel.transferTo把主文件复制到临时文件。每一步在独立连接上持有
+ * RESERVED锁（BEGIN IMMEDIATE），这一小段时间内其他连接不能提交，也就不会改动主文件；
+ * 步与步之间锁释放，写入照常进行。用PRAGMA data_version检测期间是否有提交，
+ * 有则从头重试（与sqlite3_backup遇到外部写入时的处理相同），超过重试次数后失败。
+ * 任何时候都不在整个复制期间持锁，否则写入方会等到超过busy timeout而失败。
+ * <p>
+ * 恢复时先校验快照，再复制到数据库目录下的临时文件并fsync，最后rename覆盖原文件。
+ * 主库和ATTACH的冷库可以作为一组处理：快照是同一时刻的状态，恢复时全部校验并复制完成后才开始替换。
+ */
+public final class DatabaseSnapshot {
+    private static final String TAG = "DatabaseSnapshot";
+    private static final int PAGES_PER_STEP = 256;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int CHECKPOINT_ATTEMPTS = 5;
+    private static final long CHECKPOINT_RETRY_MILLIS = 50;
+
+    private DatabaseSnapshot() {
+    }
+
+    /**
+     * 复制进度
+     */
+    public interface ProgressListener {
+        /**
+         * @param copiedBytes 已复制字节数
+         * @param totalBytes  总字节数
+         * @param attempt     第几次尝试，从1开始，检测到并发写入时会重新开始
+         */
+        void onProgress(long copiedBytes, long totalBytes, int attempt);
+    }
+
+    /**
+     * 生成快照
+     *
+     * @param database 正在使用的数据库连接，用于checkpoint
+     * @param source   数据库文件
+     * @param target   快照文件，已存在时覆盖
+     * @param listener 进度回调，可为null
+     * @throws IOException WAL无法完整checkpoint，或者每次复制期间都有写入提交
+     */
+    public static void snapshot(SQLiteDatabase database, File source, File target, ProgressListener listener) throws IOException {
+        snapshot(database, new File[]{source}, new File[]{target}, listener);
+    }
+
+    /**
+     * 把同一连接上ATTACH的几个数据库文件作为整体生成快照，复制期间任何一个文件有提交都从头重试，
+     * 所以各快照是同一时刻的状态，不会出现一行数据同时在两个文件或者都不在
+     *
+     * @param database 正在使用的数据库连接，用于checkpoint，会checkpoint所有ATTACH的数据库
+     * @param sources  数据库文件
+     * @param targets  快照文件，与sources一一对应，已存在时覆盖
+     * @param listener 进度回调，字节数是所有文件的合计，可为null
+     * @throws IOException WAL无法完整checkpoint，或者每次复制期间都有写入提交
+     */
+    public static void snapshot(SQLiteDatabase database, File[] sources, File[] targets, ProgressListener listener) throws IOException {
+        if (sources.length != targets.length) {
+            throw new IllegalArgumentException("sources and targets must have the same length!");
+        }
+        File[] temps = new File[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            temps[i] = new File(targets[i].getPath() + ".tmp");
+        }
+        SQLiteDatabase[] observers = new SQLiteDatabase[sources.length];
+        try {
+            for (int i = 0; i < sources.length; i++) {
+                //不建android_metadata，否则打开冷库时会写入它
+                observers[i] = SQLiteDatabase.openDatabase(sources[i].getPath(), null,
+                        SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+            }
+            for (int attempt = 1; ; attempt++) {
+                checkpoint(database);
+                if (copy(observers, sources, temps, attempt, listener)) {
+                    break;
+                }
+                Log.w(TAG, "database changed during snapshot, attempt " + attempt);
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw new IOException("database kept changing during snapshot, gave up after " + attempt + " attempts");
+                }
+            }
+        } catch (IOException e) {
+            deleteAll(temps);
+            throw e;
+        } finally {
+            for (SQLiteDatabase observer : observers) {
+                if (observer != null) {
+                    observer.close();
+                }
+            }
+        }
+        for (int i = 0; i < temps.length; i++) {
+            if (!temps[i].renameTo(targets[i])) {
+                deleteAll(temps);
+                throw new IOException("rename " + temps[i] + " to " + targets[i] + " failed");
+            }
+        }
+    }
+
+    /**
+     * 用快照覆盖数据库文件，调用前必须关闭所有指向该文件的连接
+     *
+     * @param snapshot 快照文件
+     * @param target   数据库文件
+     * @throws IOException 快照损坏或复制失败，原数据库文件保持不变
+     */
+    public static void restore(File snapshot, File target) throws IOException {
+        restore(new File[]{snapshot}, new File[]{target});
+    }
+
+    /**
+     * 用一组快照覆盖对应的数据库文件，调用前必须关闭所有指向这些文件的连接。
+     * 全部校验通过并复制到临时文件后才开始替换，任何一个快照损坏时所有数据库文件都保持不变
+     *
+     * @param snapshots 快照文件
+     * @param targets   数据库文件，与snapshots一一对应
+     * @throws IOException 快照损坏或复制失败
+     */
+    public static void restore(File[] snapshots, File[] targets) throws IOException {
+        if (snapshots.length != targets.length) {
+            throw new IllegalArgumentException("snapshots and targets must have the same length!");
+        }
+        for (File snapshot : snapshots) {
+            verify(snapshot);
+        }
+        File[] temps = new File[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            temps[i] = new File(targets[i].getPath() + ".restore");
+        }
+        try {
+            for (int i = 0; i < snapshots.length; i++) {
+                copyFile(snapshots[i], temps[i]);
+            }
+        } catch (IOException e) {
+            deleteAll(temps);
+            throw e;
+        }
+        for (int i = 0; i < temps.length; i++) {
+            //旧的WAL和回滚日志属于被替换的文件，必须一起删除
+            deleteJournals(targets[i]);
+            if (!temps[i].renameTo(targets[i])) {
+                deleteAll(temps);
+                throw new IOException("rename " + temps[i] + " to " + targets[i] + " failed");
+            }
+        }
+    }
+
+    /**
+     * 删除数据库文件以及它的WAL和回滚日志，调用前必须关闭所有指向该文件的连接
+     *
+     * @param database 数据库文件
+     */
+    public static void delete(File database) {
+        deleteJournals(database);
+        database.delete();
+    }
+
+    private static void deleteJournals(File database) {
+        new File(database.getPath() + "-wal").delete();
+        new File(database.getPath() + "-shm").delete();
+        new File(database.getPath() + "-journal").delete();
+    }
+
+    private static void deleteAll(File[] files) {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private static void copyFile(File source, File target) throws IOException {
+        FileChannel in = new RandomAccessFile(source, "r").getChannel();
+        FileChannel out = new RandomAccessFile(target, "rw").getChannel();
+        try {
+            out.truncate(0);
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(true);
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    /**
+     * 依次复制每个文件，期间没有其他连接向任何一个文件提交时返回true。
+     * 每步只锁正在复制的文件，但会检查所有文件的data_version
+     */
+    private static boolean copy(SQLiteDatabase[] observers, File[] sources, File[] temps,
+                                int attempt, ProgressListener listener) throws IOException {
+        long[] versions = new long[observers.length];
+        long total = 0;
+        for (int i = 0; i < observers.length; i++) {
+            versions[i] = pragmaLong(observers[i], "PRAGMA data_version");
+            total += sources[i].length();
+        }
+        long copied = 0;
+        for (int i = 0; i < observers.length; i++) {
+            SQLiteDatabase observer = observers[i];
+            long stepBytes = pragmaLong(observer, "PRAGMA page_size") * PAGES_PER_STEP;
+            FileChannel in = new RandomAccessFile(sources[i], "r").getChannel();
+            FileChannel out = new RandomAccessFile(temps[i], "rw").getChannel();
+            try {
+                out.truncate(0);
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    observer.beginTransactionNonExclusive();
+                    try {
+                        if (changed(observers, versions)) {
+                            return false;
+                        }
+                        //文件可能因提交而增长，每步都重新读取大小
+                        size = in.size();
+                        long end = Math.min(size, position + stepBytes);
+                        while (position < end) {
+                            position += in.transferTo(position, end - position, out);
+                        }
+                    } finally {
+                        observer.endTransaction();
+                    }
+                    if (listener != null) {
+                        listener.onProgress(copied + position, Math.max(total, copied + size), attempt);
+                    }
+                }
+                out.force(true);
+                copied += position;
+            } finally {
+                in.close();
+                out.close();
+            }
+        }
+        //先复制完的文件在后面的文件复制期间也不能有提交
+        return !changed(observers, versions);
+    }
+
+    private static boolean changed(SQLiteDatabase[] observers, long[] versions) {
+        for (int i = 0; i < observers.length; i++) {
+            if (pragmaLong(observers[i], "PRAGMA data_version") != versions[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把WAL全部写回主文件。结果行为(busy, log, checkpointed)，
+     * busy不为0或者checkpointed小于log时有读写方挡住了checkpoint，主文件不完整
+     */
+    private static void checkpoint(SQLiteDatabase database) throws IOException {
+        Cursor cursor = database.rawQuery("PRAGMA journal_mode", null);
+        try {
+            if (!cursor.moveToFirst() || !"wal".equalsIgnoreCase(cursor.getString(0))) {
+                return;
+            }
+        } finally {
+            cursor.close();
+        }
+        for (int attempt = 1; ; attempt++) {
+            long busy;
+            long log;
+            long checkpointed;
+            cursor = database.rawQuery("PRAGMA wal_checkpoint(FULL)", null);
+            try {
+                if (!cursor.moveToFirst()) {
+                    throw new IOException("wal_checkpoint returned no result");
+                }
+                busy = cursor.getLong(0);
+                log = cursor.getLong(1);
+                checkpointed = cursor.getLong(2);
+            } finally {
+                cursor.close();
+            }
+            if (busy == 0 && checkpointed >= log) {
+                return;
+            }
+            if (attempt >= CHECKPOINT_ATTEMPTS) {
+                throw new IOException("wal_checkpoint incomplete: busy=" + busy + " log=" + log
+                        + " checkpointed=" + checkpointed);
+            }
+            Log.w(TAG, "wal_checkpoint incomplete, attempt " + attempt);
+            try {
+                Thread.sleep(CHECKPOINT_RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for checkpoint", e);
+            }
+        }
+    }
+
+    private static void verify(File snapshot) throws IOException {
+        if (!snapshot.isFile()) {
+            throw new IOException(snapshot + " does not exist");
+        }
+        SQLiteDatabase database = null;
+        try {
+            database = SQLiteDatabase.openDatabase(snapshot.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+            Cursor cursor = database.rawQuery("PRAGMA quick_check", null);
+            try {
+                if (!cursor.moveToFirst() || !"ok".equalsIgnoreCase(cursor.getString(0))) {
+                    throw new IOException(snapshot + " failed integrity check");
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (RuntimeException e) {
+            throw new IOException(snapshot + " is not a valid database", e);
+        } finally {
+            if (database != null) {
+                database.close();
+            }
+        }
+    }
+
+    private static long pragmaLong(SQLiteDatabase database, String sql) {
+        Cursor cursor = database.rawQuery(sql, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
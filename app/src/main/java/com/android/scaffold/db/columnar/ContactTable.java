@@ -0,0 +1,315 @@
+package com.android.scaffold.db.columnar;
+
+import com.android.scaffold.db.entity.Contact;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 只读的列式联系人集合：id和age存为基本类型数组，age的null用位图表示，
+ * name去重后只保存一份，行里只存字典下标。
+ * filter和sort只生成新的行下标，列数据在各视图间共享
+ */
+public class ContactTable {
+    private final long[] mIds;
+    private final int[] mAges;
+    private final long[] mAgeNulls;
+    private final int[] mNameRefs;
+    private final String[] mNames;
+    /**
+     * 行下标，为null时表示按存储顺序的全部行
+     */
+    private final int[] mSelection;
+    private final int mSize;
+
+    private ContactTable(long[] ids, int[] ages, long[] ageNulls, int[] nameRefs, String[] names, int[] selection, int size) {
+        mIds = ids;
+        mAges = ages;
+        mAgeNulls = ageNulls;
+        mNameRefs = nameRefs;
+        mNames = names;
+        mSelection = selection;
+        mSize = size;
+    }
+
+    /**
+     * 行过滤条件
+     */
+    public interface RowPredicate {
+        boolean test(Row row);
+    }
+
+    /**
+     * 行比较器
+     */
+    public interface RowComparator {
+        int compare(Row a, Row b);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 不同name的个数
+     *
+     * @return 字典大小
+     */
+    public int distinctNames() {
+        return mNames.length;
+    }
+
+    /**
+     * 获得可复用的行视图，通过moveTo切换行，不为每行创建对象
+     *
+     * @return 行视图
+     */
+    public Row newRow() {
+        return new Row();
+    }
+
+    /**
+     * 把一行转换成Contact对象
+     *
+     * @param position 行位置
+     * @return Contact对象
+     */
+    public Contact toContact(int position) {
+        Row row = newRow().moveTo(position);
+        Contact contact = new Contact();
+        contact.setId(row.getId());
+        contact.setName(row.getName());
+        contact.setAge(row.isAgeNull() ? null : row.getAge());
+        return contact;
+    }
+
+    /**
+     * 过滤
+     *
+     * @param predicate 过滤条件
+     * @return 共享列数据的新视图
+     */
+    public ContactTable filter(RowPredicate predicate) {
+        int[] selection = new int[mSize];
+        int size = 0;
+        Row row = newRow();
+        for (int i = 0; i < mSize; i++) {
+            if (predicate.test(row.moveTo(i))) {
+                selection[size++] = storageIndex(i);
+            }
+        }
+        return new ContactTable(mIds, mAges, mAgeNulls, mNameRefs, mNames, Arrays.copyOf(selection, size), size);
+    }
+
+    /**
+     * 稳定排序
+     *
+     * @param comparator 行比较器
+     * @return 共享列数据的新视图
+     */
+    public ContactTable sort(RowComparator comparator) {
+        int[] selection = new int[mSize];
+        for (int i = 0; i < mSize; i++) {
+            selection[i] = storageIndex(i);
+        }
+        mergeSort(selection, new int[mSize], 0, mSize, comparator, new Row(), new Row());
+        return new ContactTable(mIds, mAges, mAgeNulls, mNameRefs, mNames, selection, mSize);
+    }
+
+    /**
+     * 对存储下标做归并排序，直接操作int[]，不装箱
+     */
+    private void mergeSort(int[] order, int[] buffer, int from, int to, RowComparator comparator, Row a, Row b) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(order, buffer, from, mid, comparator, a, b);
+        mergeSort(order, buffer, mid, to, comparator, a, b);
+        //两半已经有序，不需要合并
+        if (comparator.compare(a.moveToStorage(order[mid - 1]), b.moveToStorage(order[mid])) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            //相等时取左半边，保持稳定
+            if (right >= to || (left < mid
+                    && comparator.compare(a.moveToStorage(buffer[left]), b.moveToStorage(buffer[right])) <= 0)) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * 按age升序，null排在最后
+     */
+    public static final RowComparator BY_AGE = new RowComparator() {
+        @Override
+        public int compare(Row a, Row b) {
+            if (a.isAgeNull() || b.isAgeNull()) {
+                return a.isAgeNull() == b.isAgeNull() ? 0 : (a.isAgeNull() ? 1 : -1);
+            }
+            return a.getAge() < b.getAge() ? -1 : (a.getAge() == b.getAge() ? 0 : 1);
+        }
+    };
+
+    /**
+     * 按name升序，null排在最后
+     */
+    public static final RowComparator BY_NAME = new RowComparator() {
+        @Override
+        public int compare(Row a, Row b) {
+            String x = a.getName();
+            String y = b.getName();
+            if (x == null || y == null) {
+                return x == y ? 0 : (x == null ? 1 : -1);
+            }
+            return x.compareTo(y);
+        }
+    };
+
+    private int storageIndex(int position) {
+        return mSelection == null ? position : mSelection[position];
+    }
+
+    /**
+     * 行视图（flyweight），只保存当前行的存储下标
+     */
+    public class Row {
+        private int mIndex;
+
+        public Row moveTo(int position) {
+            if (position < 0 || position >= mSize) {
+                throw new IndexOutOfBoundsException("position " + position + ", size " + mSize);
+            }
+            mIndex = storageIndex(position);
+            return this;
+        }
+
+        Row moveToStorage(int index) {
+            mIndex = index;
+            return this;
+        }
+
+        public long getId() {
+            return mIds[mIndex];
+        }
+
+        public String getName() {
+            int ref = mNameRefs[mIndex];
+            return ref < 0 ? null : mNames[ref];
+        }
+
+        public boolean isAgeNull() {
+            return (mAgeNulls[mIndex >>> 6] & (1L << mIndex)) != 0;
+        }
+
+        /**
+         * age为null时返回0，先用isAgeNull判断
+         */
+        public int getAge() {
+            return mAges[mIndex];
+        }
+    }
+
+    /**
+     * 逐行追加构建ContactTable，build后Builder清空，可以继续用来构建下一个表
+     */
+    public static class Builder {
+        private long[] mIds;
+        private int[] mAges;
+        private long[] mAgeNulls;
+        private int[] mNameRefs;
+        private final Map<String, Integer> mNameIndex = new HashMap<>();
+        private String[] mNames = new String[16];
+        private int mSize;
+
+        public Builder() {
+            this(16);
+        }
+
+        public Builder(int expectedRows) {
+            int capacity = Math.max(16, expectedRows);
+            mIds = new long[capacity];
+            mAges = new int[capacity];
+            mAgeNulls = new long[(capacity + 63) >>> 6];
+            mNameRefs = new int[capacity];
+        }
+
+        /**
+         * 追加一行
+         *
+         * @param id      id
+         * @param name    name，可为null
+         * @param ageNull age是否为null
+         * @param age     age，ageNull为true时忽略
+         * @return Builder
+         */
+        public Builder add(long id, String name, boolean ageNull, int age) {
+            ensureCapacity(mSize + 1);
+            mIds[mSize] = id;
+            if (ageNull) {
+                mAgeNulls[mSize >>> 6] |= 1L << mSize;
+            } else {
+                mAges[mSize] = age;
+            }
+            mNameRefs[mSize] = intern(name);
+            mSize++;
+            return this;
+        }
+
+        public ContactTable build() {
+            String[] names = Arrays.copyOf(mNames, mNameIndex.size());
+            ContactTable table = new ContactTable(
+                    Arrays.copyOf(mIds, mSize),
+                    Arrays.copyOf(mAges, mSize),
+                    Arrays.copyOf(mAgeNulls, (mSize + 63) >>> 6),
+                    Arrays.copyOf(mNameRefs, mSize),
+                    names, null, mSize);
+            reset();
+            return table;
+        }
+
+        /**
+         * 清空已追加的行和name字典，保留已分配的数组
+         */
+        private void reset() {
+            Arrays.fill(mAgeNulls, 0L);
+            Arrays.fill(mNames, 0, mNameIndex.size(), null);
+            mNameIndex.clear();
+            mSize = 0;
+        }
+
+        private int intern(String name) {
+            if (name == null) {
+                return -1;
+            }
+            Integer ref = mNameIndex.get(name);
+            if (ref == null) {
+                ref = mNameIndex.size();
+                if (ref == mNames.length) {
+                    mNames = Arrays.copyOf(mNames, mNames.length * 2);
+                }
+                mNames[ref] = name;
+                mNameIndex.put(name, ref);
+            }
+            return ref;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= mIds.length) {
+                return;
+            }
+            int newCapacity = Math.max(capacity, mIds.length + (mIds.length >> 1));
+            mIds = Arrays.copyOf(mIds, newCapacity);
+            mAges = Arrays.copyOf(mAges, newCapacity);
+            mAgeNulls = Arrays.copyOf(mAgeNulls, (newCapacity + 63) >>> 6);
+            mNameRefs = Arrays.copyOf(mNameRefs, newCapacity);
+        }
+    }
+}
@@ -1,24 +1,41 @@
 package com.android.scaffold.db.dao.base;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 import com.android.scaffold.db.DatabaseHelper;
+import com.android.scaffold.db.entity.Timestamped;
+import com.android.scaffold.db.maintenance.DatabaseMaintenanceScheduler;
+import com.android.scaffold.db.transfer.EntityTransfer;
 import com.j256.ormlite.android.apptools.OrmLiteSqliteOpenHelper;
 import com.j256.ormlite.dao.*;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.misc.TransactionManager;
 import com.j256.ormlite.stmt.PreparedDelete;
 import com.j256.ormlite.stmt.PreparedQuery;
 import com.j256.ormlite.stmt.PreparedUpdate;
 import com.j256.ormlite.stmt.QueryBuilder;
 import com.j256.ormlite.stmt.Where;
 import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableInfo;
 
+import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.InvalidParameterException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -31,7 +48,27 @@ public class BaseDao<T, ID> {
     private Context mContext;
     private Dao<T, ID> mDao;
 
+    /**
+     * 子类到实体类型的缓存，避免每次构造都解析泛型
+     */
+    private static final ConcurrentHashMap<Class<?>, Class<?>> ENTITY_TYPES = new ConcurrentHashMap<>();
+
+    /**
+     * 单条语句的参数上限，SQLite默认最多999个
+     */
+    private static final int MAX_SQL_ARGS = 500;
+
     public BaseDao(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * 直接指定实体类型，不需要子类也能使用
+     *
+     * @param context     context
+     * @param entityClass 实体类型，为null时从子类的泛型参数获取
+     */
+    public BaseDao(Context context, Class<T> entityClass) {
         if (context == null) {
             //如果为空，则扔出非法参数异常
             throw new IllegalArgumentException("Context can't be null!");
@@ -40,14 +77,7 @@ public class BaseDao<T, ID> {
         mContext = context.getApplicationContext();
         //获得单例helper
         mDatabaseHelper = DatabaseHelper.getHelper(mContext);
-        /**
-         * 获取泛型类型
-         */
-        Type type = getClass().getGenericSuperclass();
-        Class<T> clazz = null;
-        if (type instanceof ParameterizedType) {
-            clazz = (Class<T>) ((ParameterizedType) type).getActualTypeArguments()[0];
-        }
+        Class<T> clazz = entityClass != null ? entityClass : (Class<T>) resolveEntityType(getClass());
         try {
             mDao = mDatabaseHelper.getDao(clazz);
         } catch (SQLException e) {
@@ -55,6 +85,22 @@ public class BaseDao<T, ID> {
         }
     }
 
+    /**
+     * 获取泛型类型，结果按子类缓存
+     */
+    private static Class<?> resolveEntityType(Class<?> daoClass) {
+        Class<?> entityType = ENTITY_TYPES.get(daoClass);
+        if (entityType == null) {
+            Type type = daoClass.getGenericSuperclass();
+            if (!(type instanceof ParameterizedType)) {
+                return null;
+            }
+            entityType = (Class<?>) ((ParameterizedType) type).getActualTypeArguments()[0];
+            ENTITY_TYPES.putIfAbsent(daoClass, entityType);
+        }
+        return entityType;
+    }
+
     /**
      * 提供Dao
      *
@@ -64,6 +110,65 @@ public class BaseDao<T, ID> {
         return mDao;
     }
 
+    /**
+     * 在同一个事务中执行多个操作，出现异常时整体回滚
+     *
+     * @param callable 事务内执行的操作
+     * @return callable的返回值
+     * @throws SQLException SQLException异常
+     */
+    public <V> V callInTransaction(Callable<V> callable) throws SQLException {
+        return TransactionManager.callInTransaction(mDatabaseHelper.getConnectionSource(), callable);
+    }
+
+    /**
+     * 记录写入的行数，供后台维护判断何时重新统计和整理。
+     * 直接通过getDao()或callInTransaction写入时需要自行调用
+     *
+     * @param rows 写入的行数
+     */
+    public void recordWrites(int rows) {
+        DatabaseMaintenanceScheduler.getInstance(mContext).onWrite(rows);
+    }
+
+    /**
+     * 记录一次读取，后台维护在读写都停止一段时间后才执行，避免与分页等前台查询争用数据库。
+     * 直接通过getDao()查询时需要自行调用
+     */
+    public void recordRead() {
+        DatabaseMaintenanceScheduler.getInstance(mContext).onRead();
+    }
+
+    /**
+     * 逐行访问Cursor，不创建实体对象
+     */
+    public interface CursorVisitor {
+        void visit(Cursor cursor);
+    }
+
+    /**
+     * 执行原生查询，每一行回调一次visitor，适合直接把列读入基本类型数组
+     *
+     * @param sql           查询语句
+     * @param selectionArgs 查询参数
+     * @param visitor       行访问者
+     * @return 行数
+     */
+    public int queryCursor(String sql, String[] selectionArgs, CursorVisitor visitor) {
+        recordRead();
+        Cursor cursor = mDatabaseHelper.getReadableDatabase().rawQuery(sql, selectionArgs);
+        try {
+            int rows = 0;
+            while (cursor.moveToNext()) {
+                visitor.visit(cursor);
+                rows++;
+            }
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+
     /**
      * 增，带事务操作
      *
@@ -78,8 +183,10 @@ public class BaseDao<T, ID> {
         try {
             databaseConnection = dao.startThreadConnection();
             dao.setAutoCommit(databaseConnection, false);
+            touch(t);
             int create = dao.create(t);
             dao.commit(databaseConnection);
+            recordWrites(create);
             return create;
         } catch (SQLException e) {
             dao.rollBack(databaseConnection);
@@ -103,8 +210,10 @@ public class BaseDao<T, ID> {
         try {
             databaseConnection = dao.startThreadConnection();
             dao.setAutoCommit(databaseConnection, false);
+            touch(t);
             Dao.CreateOrUpdateStatus orUpdate = dao.createOrUpdate(t);
             dao.commit(databaseConnection);
+            recordWrites(1);
             return orUpdate;
         } catch (SQLException e) {
             dao.rollBack(databaseConnection);
@@ -129,9 +238,11 @@ public class BaseDao<T, ID> {
             databaseConnection = dao.startThreadConnection();
             dao.setAutoCommit(databaseConnection, false);
             for (T item : t) {
+                touch(item);
                 dao.create(item);
             }
             dao.commit(databaseConnection);
+            recordWrites(t.size());
             return t.size();
         } catch (SQLException e) {
             dao.rollBack(databaseConnection);
@@ -151,12 +262,15 @@ public class BaseDao<T, ID> {
      */
     public int delete(T t) throws SQLException {
         Dao<T, ID> dao = getDao();
+        attachArchiveIfExists();
         DatabaseConnection databaseConnection = null;
         try {
             databaseConnection = dao.startThreadConnection();
             dao.setAutoCommit(databaseConnection, false);
             int delete = dao.delete(t);
+            delete += deleteArchivedIds(Collections.singletonList(dao.extractId(t)));
             dao.commit(databaseConnection);
+            recordWrites(delete);
             return delete;
         } catch (SQLException e) {
             dao.rollBack(databaseConnection);
@@ -176,12 +290,15 @@ public class BaseDao<T, ID> {
      */
     public int delete(List<T> list) throws SQLException {
         Dao<T, ID> dao = getDao();
+        attachArchiveIfExists();
         DatabaseConnection databaseConnection = null;
         try {
             databaseConnection = dao.startThreadConnection();
             dao.setAutoCommit(databaseConnection, false);
             int delete = dao.delete(list);
+            delete += deleteArchivedIds(extractIds(list));
             dao.commit(databaseConnection);
+            recordWrites(delete);
             return delete;
         } catch (SQLException e) {
             dao.rollBack(databaseConnection);
@@ -205,12 +322,15 @@ public class BaseDao<T, ID> {
         List<T> list = query(columnNames, columnValues);
         if (null != list && !list.isEmpty()) {
             Dao<T, ID> dao = getDao();
+            attachArchiveIfExists();
             DatabaseConnection databaseConnection = null;
             try {
                 databaseConnection = dao.startThreadConnection();
                 dao.setAutoCommit(databaseConnection, false);
                 int delete = dao.delete(list);
+                delete += deleteArchivedIds(extractIds(list));
                 dao.commit(databaseConnection);
+                recordWrites(delete);
                 return delete;
             } catch (SQLException e) {
                 dao.rollBack(databaseConnection);
@@ -231,12 +351,15 @@ public class BaseDao<T, ID> {
      */
     public int deleteById(ID id) throws SQLException {
         Dao<T, ID> dao = getDao();
+        attachArchiveIfExists();
         DatabaseConnection databaseConnection = null;
         try {
             databaseConnection = dao.startThreadConnection();
             dao.setAutoCommit(databaseConnection, false);
             int delete = dao.deleteById(id);
+            delete += deleteArchivedIds(Collections.singletonList(id));
             dao.commit(databaseConnection);
+            recordWrites(delete);
             return delete;
         } catch (SQLException e) {
             dao.rollBack(databaseConnection);
@@ -256,13 +379,15 @@ public class BaseDao<T, ID> {
      */
     public int deleteByIds(List<ID> ids) throws SQLException {
         Dao<T, ID> dao = getDao();
-
+        attachArchiveIfExists();
         DatabaseConnection databaseConnection = null;
         try {
             databaseConnection = dao.startThreadConnection();
             dao.setAutoCommit(databaseConnection, false);
             int delete = dao.deleteIds(ids);
+            delete += deleteArchivedIds(ids);
             dao.commit(databaseConnection);
+            recordWrites(delete);
             return delete;
         } catch (SQLException e) {
             dao.rollBack(databaseConnection);
@@ -274,7 +399,7 @@ public class BaseDao<T, ID> {
     }
 
     /**
-     * 删，带事务操作
+     * 删，带事务操作，只删除热库中的行，冷库中的行需要另外用deleteArchivedIds删除
      *
      * @param preparedDelete PreparedDelete类
      * @return 影响的行数
@@ -288,6 +413,7 @@ public class BaseDao<T, ID> {
             dao.setAutoCommit(databaseConnection, false);
             int delete = dao.delete(preparedDelete);
             dao.commit(databaseConnection);
+            recordWrites(delete);
             return delete;
         } catch (SQLException e) {
             dao.rollBack(databaseConnection);
@@ -311,8 +437,10 @@ public class BaseDao<T, ID> {
         try {
             databaseConnection = dao.startThreadConnection();
             dao.setAutoCommit(databaseConnection, false);
+            touch(t);
             int update = dao.update(t);
             dao.commit(databaseConnection);
+            recordWrites(update);
             return update;
         } catch (SQLException e) {
             dao.rollBack(databaseConnection);
@@ -338,6 +466,7 @@ public class BaseDao<T, ID> {
             dao.setAutoCommit(databaseConnection, false);
             int update = dao.update(preparedUpdate);
             dao.commit(databaseConnection);
+            recordWrites(update);
             return update;
         } catch (SQLException e) {
             dao.rollBack(databaseConnection);
@@ -355,6 +484,7 @@ public class BaseDao<T, ID> {
      * @throws SQLException SQLException异常
      */
     public List<T> queryAll() throws SQLException {
+        recordRead();
         Dao<T, ID> dao = getDao();
         DatabaseConnection databaseConnection = null;
         try {
@@ -380,6 +510,7 @@ public class BaseDao<T, ID> {
      * @throws SQLException SQLException异常
      */
     public List<T> query(PreparedQuery<T> preparedQuery) throws SQLException {
+        recordRead();
         Dao<T, ID> dao = getDao();
         DatabaseConnection databaseConnection = null;
         try {
@@ -406,6 +537,7 @@ public class BaseDao<T, ID> {
      * @throws SQLException SQLException异常
      */
     public List<T> query(String columnName, String columnValue) throws SQLException {
+        recordRead();
         QueryBuilder<T, ID> queryBuilder = getDao().queryBuilder();
         queryBuilder.where().eq(columnName, columnValue);
         PreparedQuery<T> preparedQuery = queryBuilder.prepare();
@@ -436,6 +568,7 @@ public class BaseDao<T, ID> {
      * @throws SQLException SQLException异常
      */
     public List<T> query(String[] columnNames, Object[] columnValues) throws SQLException {
+        recordRead();
         if (columnNames.length != columnNames.length) {
             throw new InvalidParameterException("params size is not equal");
         }
@@ -476,6 +609,7 @@ public class BaseDao<T, ID> {
      * @throws SQLException SQLException异常
      */
     public List<T> query(Map<String, Object> map) throws SQLException {
+        recordRead();
         QueryBuilder<T, ID> queryBuilder = getDao().queryBuilder();
         if (!map.isEmpty()) {
             Where<T, ID> wheres = queryBuilder.where();
@@ -519,6 +653,7 @@ public class BaseDao<T, ID> {
      * @throws SQLException SQLException异常
      */
     public T queryById(ID id) throws SQLException {
+        recordRead();
         Dao<T, ID> dao = getDao();
         DatabaseConnection databaseConnection = null;
         try {
@@ -536,6 +671,235 @@ public class BaseDao<T, ID> {
         return null;
     }
 
+    /**
+     * 实体实现Timestamped时把更新时间设为当前时间。BaseDao的增改方法会自动调用，
+     * 直接通过getDao()写入时需要自己调用
+     *
+     * @param t 泛型实体类
+     */
+    public void touch(T t) {
+        if (t instanceof Timestamped) {
+            ((Timestamped) t).setUpdatedAt(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 冷库文件存在时ATTACH并建表。ATTACH不能在事务中执行，
+     * 要在事务中调用deleteArchivedIds时先在事务外调用本方法
+     *
+     * @return 冷库是否可用
+     * @throws SQLException SQLException异常
+     */
+    public boolean attachArchiveIfExists() throws SQLException {
+        if (!((DatabaseHelper) mDatabaseHelper).hasArchive()) {
+            return false;
+        }
+        ensureArchiveTable();
+        return true;
+    }
+
+    /**
+     * 从冷库删除指定id的行，冷库未ATTACH时什么都不做，可以在事务中调用
+     *
+     * @param ids id集合
+     * @return 删除的行数
+     */
+    public int deleteArchivedIds(Collection<ID> ids) {
+        if (ids.isEmpty() || !((DatabaseHelper) mDatabaseHelper).isArchiveAttached()) {
+            return 0;
+        }
+        TableInfo<T, ID> tableInfo = getTableInfo();
+        String table = DatabaseHelper.ARCHIVE_SCHEMA + "." + tableInfo.getTableName();
+        String id = tableInfo.getIdField().getColumnName();
+        SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
+        List<String> args = new ArrayList<>(Math.min(ids.size(), MAX_SQL_ARGS));
+        int deleted = 0;
+        Iterator<ID> iterator = ids.iterator();
+        while (iterator.hasNext()) {
+            args.add(String.valueOf(iterator.next()));
+            if (args.size() == MAX_SQL_ARGS || !iterator.hasNext()) {
+                StringBuilder where = new StringBuilder(id).append(" IN (?");
+                for (int i = 1; i < args.size(); i++) {
+                    where.append(",?");
+                }
+                deleted += database.delete(table, where.append(')').toString(), args.toArray(new String[args.size()]));
+                args.clear();
+            }
+        }
+        return deleted;
+    }
+
+    private List<ID> extractIds(List<T> list) throws SQLException {
+        Dao<T, ID> dao = getDao();
+        List<ID> ids = new ArrayList<>(list.size());
+        for (T t : list) {
+            ids.add(dao.extractId(t));
+        }
+        return ids;
+    }
+
+    /**
+     * 把column小于threshold的行分批迁移到冷库，每批一个事务，批与批之间释放数据库，
+     * 不要在主线程调用
+     *
+     * @param column    用于区分冷热的列，例如更新时间
+     * @param threshold 小于该值的行迁出
+     * @param chunkSize 每批行数
+     * @return 迁移的行数
+     * @throws SQLException SQLException异常
+     */
+    public int archive(String column, long threshold, int chunkSize) throws SQLException {
+        String table = getTableInfo().getTableName();
+        //没有需要迁出的行时不创建也不ATTACH冷库
+        if (getDao().queryRawValue("SELECT COUNT(*) FROM (SELECT 1 FROM main." + table + " WHERE " + column
+                + " < CAST(? AS INTEGER) LIMIT 1)", String.valueOf(threshold)) == 0) {
+            return 0;
+        }
+        ensureArchiveTable();
+        String chunk = "SELECT rowid FROM main." + table + " WHERE " + column + " < ? ORDER BY rowid LIMIT " + chunkSize;
+        SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
+        SQLiteStatement copy = database.compileStatement("INSERT OR REPLACE INTO " + DatabaseHelper.ARCHIVE_SCHEMA + "." + table
+                + " SELECT * FROM main." + table + " WHERE rowid IN (" + chunk + ")");
+        SQLiteStatement delete = database.compileStatement("DELETE FROM main." + table + " WHERE rowid IN (" + chunk + ")");
+        int moved = 0;
+        try {
+            while (true) {
+                int deleted;
+                database.beginTransaction();
+                try {
+                    copy.bindLong(1, threshold);
+                    copy.execute();
+                    delete.bindLong(1, threshold);
+                    deleted = delete.executeUpdateDelete();
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+                moved += deleted;
+                recordWrites(deleted * 2);
+                if (deleted < chunkSize) {
+                    return moved;
+                }
+                //让出数据库给前台的读写
+                Thread.yield();
+            }
+        } finally {
+            copy.close();
+            delete.close();
+        }
+    }
+
+    /**
+     * 查询全部数据，includeArchived为true时同时查询冷库，热库中的同id数据优先
+     *
+     * @param includeArchived 是否包含冷库数据
+     * @return 查询结果集合
+     * @throws SQLException SQLException异常
+     */
+    public List<T> queryAll(boolean includeArchived) throws SQLException {
+        //从未归档过时不创建冷库
+        if (!includeArchived || !attachArchiveIfExists()) {
+            return queryAll();
+        }
+        recordRead();
+        TableInfo<T, ID> tableInfo = getTableInfo();
+        String table = tableInfo.getTableName();
+        String id = tableInfo.getIdField().getColumnName();
+        String sql = "SELECT * FROM main." + table
+                + " UNION ALL SELECT * FROM " + DatabaseHelper.ARCHIVE_SCHEMA + "." + table
+                + " WHERE " + id + " NOT IN (SELECT " + id + " FROM main." + table + ")";
+        return getDao().queryRaw(sql, getDao().getRawRowMapper()).getResults();
+    }
+
+    /**
+     * 获得记录数，includeArchived为true时包含冷库中不与热库重复的数据
+     *
+     * @param includeArchived 是否包含冷库数据
+     * @return 记录数
+     * @throws SQLException SQLException异常
+     */
+    public long count(boolean includeArchived) throws SQLException {
+        if (!includeArchived || !attachArchiveIfExists()) {
+            return count();
+        }
+        recordRead();
+        TableInfo<T, ID> tableInfo = getTableInfo();
+        String table = tableInfo.getTableName();
+        String id = tableInfo.getIdField().getColumnName();
+        return getDao().queryRawValue("SELECT (SELECT COUNT(*) FROM main." + table + ") + COUNT(*) FROM "
+                + DatabaseHelper.ARCHIVE_SCHEMA + "." + table
+                + " WHERE " + id + " NOT IN (SELECT " + id + " FROM main." + table + ")");
+    }
+
+    /**
+     * ATTACH冷库，并按热库的表结构创建冷库表，id列建唯一索引。
+     * 建表语句每个helper实例每张表只执行一次。
+     * 冷库表按SELECT *复制列，热库表增加列时需要在onUpgrade中同步修改冷库表
+     */
+    private void ensureArchiveTable() throws SQLException {
+        DatabaseHelper helper = (DatabaseHelper) mDatabaseHelper;
+        helper.attachArchive();
+        TableInfo<T, ID> tableInfo = getTableInfo();
+        String table = tableInfo.getTableName();
+        if (helper.isArchiveTableEnsured(table)) {
+            return;
+        }
+        String archiveTable = DatabaseHelper.ARCHIVE_SCHEMA + "." + table;
+        SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
+        database.execSQL("CREATE TABLE IF NOT EXISTS " + archiveTable + " AS SELECT * FROM main." + table + " WHERE 0");
+        database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + DatabaseHelper.ARCHIVE_SCHEMA + "." + table + "_id_idx ON "
+                + table + " (" + tableInfo.getIdField().getColumnName() + ")");
+        helper.setArchiveTableEnsured(table);
+    }
+
+    /**
+     * 以紧凑的二进制格式流式导出整张表，不创建实体对象
+     *
+     * @param channel 输出channel，调用方负责关闭
+     * @return 导出的行数
+     * @throws IOException IOException异常
+     */
+    public long exportTo(WritableByteChannel channel) throws IOException {
+        recordRead();
+        List<String> columns = getColumnNames();
+        return EntityTransfer.export(mDatabaseHelper.getReadableDatabase(), getTableInfo().getTableName(),
+                columns.toArray(new String[columns.size()]), channel);
+    }
+
+    /**
+     * 导入exportTo生成的数据，主键相同的行被替换；每chunkSize行一个事务，内存占用与总行数无关
+     *
+     * @param channel   输入channel，调用方负责关闭
+     * @param chunkSize 每个事务的行数
+     * @return 导入的行数
+     * @throws IOException 数据格式错误或包含本表没有的列，已提交的块不回滚
+     */
+    public long importFrom(ReadableByteChannel channel, int chunkSize) throws IOException {
+        return EntityTransfer.importRows(mDatabaseHelper.getWritableDatabase(), getTableInfo().getTableName(),
+                getColumnNames(), channel, chunkSize, new EntityTransfer.ChunkListener() {
+                    @Override
+                    public void onChunk(int rows) {
+                        recordWrites(rows);
+                    }
+                });
+    }
+
+    private List<String> getColumnNames() {
+        FieldType[] fieldTypes = getTableInfo().getFieldTypes();
+        List<String> columns = new ArrayList<>(fieldTypes.length);
+        for (FieldType fieldType : fieldTypes) {
+            //外键集合没有对应的列
+            if (!fieldType.isForeignCollection()) {
+                columns.add(fieldType.getColumnName());
+            }
+        }
+        return columns;
+    }
+
+    private TableInfo<T, ID> getTableInfo() {
+        return ((BaseDaoImpl<T, ID>) getDao()).getTableInfo();
+    }
+
     /**
      * 判断表是否存在
      *
@@ -554,6 +918,7 @@ public class BaseDao<T, ID> {
      * @throws SQLException SQLException异常
      */
     public long count() throws SQLException {
+        recordRead();
         Dao<T, ID> dao = getDao();
         DatabaseConnection databaseConnection = null;
         try {
@@ -579,6 +944,7 @@ public class BaseDao<T, ID> {
      * @throws SQLException SQLException异常
      */
     public long count(PreparedQuery<T> preparedQuery) throws SQLException {
+        recordRead();
         Dao<T, ID> dao = getDao();
         DatabaseConnection databaseConnection = null;
         try {
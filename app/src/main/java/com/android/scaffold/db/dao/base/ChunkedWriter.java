@@ -0,0 +1,83 @@
+package com.android.scaffold.db.dao.base;
+
+import com.j256.ormlite.dao.Dao;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * 分批写入器，攒够chunkSize条实体后在一个事务中createOrUpdate，
+ * 内存中最多只保留一批数据
+ * T 实体类
+ * ID id类型
+ */
+public class ChunkedWriter<T, ID> {
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private final BaseDao<T, ID> mBaseDao;
+    private final int mChunkSize;
+    private final List<T> mPending;
+    private int mWritten;
+
+    public ChunkedWriter(BaseDao<T, ID> baseDao) {
+        this(baseDao, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedWriter(BaseDao<T, ID> baseDao, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive!");
+        }
+        mBaseDao = baseDao;
+        mChunkSize = chunkSize;
+        mPending = new ArrayList<>(chunkSize);
+    }
+
+    /**
+     * 加入一条实体，满一批时自动提交
+     *
+     * @param t 泛型实体类
+     * @throws SQLException SQLException异常
+     */
+    public void add(T t) throws SQLException {
+        mPending.add(t);
+        if (mPending.size() >= mChunkSize) {
+            flush();
+        }
+    }
+
+    /**
+     * 提交当前未写入的实体
+     *
+     * @throws SQLException SQLException异常
+     */
+    public void flush() throws SQLException {
+        if (mPending.isEmpty()) {
+            return;
+        }
+        final Dao<T, ID> dao = mBaseDao.getDao();
+        mBaseDao.callInTransaction(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                for (T item : mPending) {
+                    mBaseDao.touch(item);
+                    dao.createOrUpdate(item);
+                }
+                return null;
+            }
+        });
+        mBaseDao.recordWrites(mPending.size());
+        mWritten += mPending.size();
+        mPending.clear();
+    }
+
+    /**
+     * 获得已写入的实体数
+     *
+     * @return 已写入的实体数
+     */
+    public int getWritten() {
+        return mWritten;
+    }
+}
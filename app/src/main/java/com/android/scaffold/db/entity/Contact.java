@@ -7,13 +7,23 @@ import com.j256.ormlite.table.DatabaseTable;
  * Created by wuganlin on 2017/3/31.
  */
 @DatabaseTable(tableName = "tb_contact")
-public class Contact {
-    @DatabaseField(generatedId = true)
+public class Contact implements Timestamped {
+    public static final String COLUMN_UPDATED_AT = "updated_at";
+
+    /**
+     * 本地新建时自增，同步时写入服务端的id
+     */
+    @DatabaseField(generatedId = true, allowGeneratedIdInsert = true)
     private Long id;
     @DatabaseField
     private String name;
     @DatabaseField
     private Integer age;
+    /**
+     * 最后写入时间，BaseDao每次新建和更新时写入，用于冷热数据分区
+     */
+    @DatabaseField(columnName = COLUMN_UPDATED_AT, index = true)
+    private Long updatedAt = System.currentTimeMillis();
 
     public Long getId() {
         return id;
@@ -38,4 +48,13 @@ public class Contact {
     public void setAge(Integer age) {
         this.age = age;
     }
+
+    public Long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @Override
+    public void setUpdatedAt(Long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
 }
@@ -0,0 +1,8 @@
+package com.android.scaffold.db.entity;
+
+/**
+ * 带更新时间的实体，BaseDao在每次新建和更新时写入当前时间
+ */
+public interface Timestamped {
+    void setUpdatedAt(Long updatedAt);
+}
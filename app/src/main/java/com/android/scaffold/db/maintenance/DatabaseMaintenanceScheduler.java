@@ -0,0 +1,323 @@
+package com.android.scaffold.db.maintenance;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.android.scaffold.db.DatabaseHelper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据库后台维护：统计写入量和碎片率，数据库空闲（没有读写）时分步执行
+ * ANALYZE/PRAGMA optimize、incremental_vacuum和WAL checkpoint，
+ * 每一步都很短，步与步之间重新检查是否空闲，有新的读写就让出。
+ * ANALYZE每步只统计一张表，支持analysis_limit时用有上限的PRAGMA optimize。
+ * 不执行完整VACUUM，只有auto_vacuum为INCREMENTAL的数据库（DatabaseHelper新建时设置）才回收空闲页。
+ * 每一步记录执行前后的文件大小和耗时
+ */
+public class DatabaseMaintenanceScheduler {
+    private static final String TAG = "DbMaintenance";
+
+    /**
+     * 最后一次读写之后多久视为空闲
+     */
+    private static final long IDLE_MILLIS = 5000;
+    /**
+     * 写入多少行之后重新统计
+     */
+    private static final long ANALYZE_WRITE_THRESHOLD = 1000;
+    /**
+     * 空闲页超过总页数的比例时整理
+     */
+    private static final double VACUUM_FREE_RATIO = 0.2;
+    /**
+     * 每一步incremental_vacuum释放的页数
+     */
+    private static final int VACUUM_PAGES_PER_STEP = 256;
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+    /**
+     * PRAGMA optimize中ANALYZE每个索引最多检查的行数，SQLite 3.32（API 31）起支持
+     */
+    private static final int ANALYSIS_LIMIT = 400;
+    private static final int MAX_REPORTS = 20;
+
+    private static volatile DatabaseMaintenanceScheduler instance;
+
+    private final Context mContext;
+    private final AtomicLong mWritesSinceAnalyze = new AtomicLong();
+    private final AtomicLong mLastWriteUptime = new AtomicLong();
+    private final AtomicLong mLastReadUptime = new AtomicLong();
+    private final List<MaintenanceReport> mReports = new ArrayList<>();
+    private Handler mHandler;
+    /**
+     * onWrite在写线程上先无锁读取，已安排时不进入synchronized
+     */
+    private volatile boolean mScheduled;
+    private boolean mAnalyzed;
+    /**
+     * 本轮还没有ANALYZE的表，只在维护线程上访问
+     */
+    private final List<String> mAnalyzeQueue = new ArrayList<>();
+    private long mWritesBeforeAnalyze;
+    private long mSizeBefore;
+
+    DatabaseMaintenanceScheduler(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    public static DatabaseMaintenanceScheduler getInstance(Context context) {
+        //每次写入都会调用，已创建时只做一次volatile读
+        DatabaseMaintenanceScheduler scheduler = instance;
+        if (scheduler == null) {
+            synchronized (DatabaseMaintenanceScheduler.class) {
+                scheduler = instance;
+                if (scheduler == null) {
+                    scheduler = new DatabaseMaintenanceScheduler(context);
+                    instance = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * 记录写入，由BaseDao在写操作提交后调用
+     *
+     * @param rows 写入的行数
+     */
+    public void onWrite(int rows) {
+        if (rows <= 0) {
+            return;
+        }
+        mWritesSinceAnalyze.addAndGet(rows);
+        mLastWriteUptime.set(SystemClock.uptimeMillis());
+        //已安排时空闲检查会读到新的写入时间并自行推迟
+        if (!mScheduled) {
+            schedule();
+        }
+    }
+
+    /**
+     * 记录读取，由BaseDao在查询前调用。只推迟已安排的维护，不会安排新的维护
+     */
+    public void onRead() {
+        mLastReadUptime.set(SystemClock.uptimeMillis());
+    }
+
+    /**
+     * 距离最后一次读写的时间
+     *
+     * @return 空闲的毫秒数
+     */
+    long getIdleMillis() {
+        return SystemClock.uptimeMillis() - Math.max(mLastWriteUptime.get(), mLastReadUptime.get());
+    }
+
+    /**
+     * 安排一次空闲检查，已安排时忽略
+     */
+    public synchronized void schedule() {
+        if (mScheduled) {
+            return;
+        }
+        mScheduled = true;
+        if (mHandler == null) {
+            HandlerThread thread = new HandlerThread("db-maintenance", android.os.Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            mHandler = new Handler(thread.getLooper());
+        }
+        mHandler.postDelayed(mStep, IDLE_MILLIS);
+    }
+
+    /**
+     * 获得最近的维护记录
+     *
+     * @return 维护记录，旧的在前
+     */
+    public synchronized List<MaintenanceReport> getReports() {
+        return new ArrayList<>(mReports);
+    }
+
+    private final Runnable mStep = new Runnable() {
+        @Override
+        public void run() {
+            long lastWrite = mLastWriteUptime.get();
+            long idleFor = getIdleMillis();
+            if (idleFor < IDLE_MILLIS) {
+                mHandler.postDelayed(this, IDLE_MILLIS - idleFor);
+                return;
+            }
+            boolean more;
+            try {
+                more = runOneStep(DatabaseHelper.getHelper(mContext).getWritableDatabase());
+            } catch (RuntimeException e) {
+                Log.e(TAG, "maintenance step failed", e);
+                more = false;
+            }
+            synchronized (DatabaseMaintenanceScheduler.this) {
+                if (more) {
+                    //下一步排在消息队列末尾，期间的写入会推迟它
+                    mHandler.post(this);
+                    return;
+                }
+                mScheduled = false;
+            }
+            //清除标记前的写入可能看到mScheduled为true而没有安排，这里补上
+            if (mLastWriteUptime.get() != lastWrite) {
+                schedule();
+            }
+        }
+    };
+
+    /**
+     * 执行一个维护步骤
+     *
+     * @return 是否还有需要执行的步骤
+     */
+    boolean runOneStep(SQLiteDatabase database) {
+        if (!mAnalyzeQueue.isEmpty()
+                || mWritesSinceAnalyze.get() >= ANALYZE_WRITE_THRESHOLD || (!mAnalyzed && !hasStatistics(database))) {
+            return analyzeStep(database);
+        }
+        long pageCount = pragmaLong(database, "PRAGMA page_count");
+        long freePages = pragmaLong(database, "PRAGMA freelist_count");
+        if (pageCount > 0 && freePages > 0 && freePages >= pageCount * VACUUM_FREE_RATIO
+                && pragmaLong(database, "PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+            //每步最多释放VACUUM_PAGES_PER_STEP页，剩下的留给下一步
+            long start = begin();
+            drain(database, "PRAGMA incremental_vacuum(" + VACUUM_PAGES_PER_STEP + ")");
+            end("incremental_vacuum(" + VACUUM_PAGES_PER_STEP + ")", start);
+            return pragmaLong(database, "PRAGMA freelist_count") > 0;
+        }
+        if ("wal".equalsIgnoreCase(pragmaString(database, "PRAGMA journal_mode"))) {
+            long start = begin();
+            drain(database, "PRAGMA wal_checkpoint(PASSIVE)");
+            end("wal_checkpoint", start);
+        }
+        return false;
+    }
+
+    /**
+     * 执行一步ANALYZE。支持analysis_limit时一步完成有上限的PRAGMA optimize，
+     * 否则每步ANALYZE一张表，表之间可以让出给前台读写
+     */
+    private boolean analyzeStep(SQLiteDatabase database) {
+        if (mAnalyzeQueue.isEmpty()) {
+            mWritesBeforeAnalyze = mWritesSinceAnalyze.get();
+            if (Build.VERSION.SDK_INT >= 31) {
+                long start = begin();
+                drain(database, "PRAGMA analysis_limit = " + ANALYSIS_LIMIT);
+                drain(database, "PRAGMA optimize");
+                finishAnalyze();
+                end("optimize", start);
+                return true;
+            }
+            mAnalyzeQueue.addAll(tables(database));
+            if (mAnalyzeQueue.isEmpty()) {
+                finishAnalyze();
+                return true;
+            }
+        }
+        String table = mAnalyzeQueue.remove(0);
+        long start = begin();
+        database.execSQL("ANALYZE main.\"" + table.replace("\"", "\"\"") + "\"");
+        if (mAnalyzeQueue.isEmpty()) {
+            finishAnalyze();
+        }
+        end("analyze " + table, start);
+        return true;
+    }
+
+    private void finishAnalyze() {
+        mWritesSinceAnalyze.addAndGet(-mWritesBeforeAnalyze);
+        mAnalyzed = true;
+    }
+
+    private static List<String> tables(SQLiteDatabase database) {
+        Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table'"
+                + " AND name NOT LIKE 'sqlite_%' ORDER BY name", null);
+        try {
+            List<String> tables = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                tables.add(cursor.getString(0));
+            }
+            return tables;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static boolean hasStatistics(SQLiteDatabase database) {
+        Cursor cursor = database.rawQuery("SELECT 1 FROM sqlite_master WHERE name = 'sqlite_stat1'", null);
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long begin() {
+        mSizeBefore = databaseSize();
+        return SystemClock.elapsedRealtime();
+    }
+
+    private void end(String step, long start) {
+        MaintenanceReport report = new MaintenanceReport(step, mSizeBefore, databaseSize(),
+                SystemClock.elapsedRealtime() - start);
+        Log.i(TAG, report.toString());
+        synchronized (this) {
+            mReports.add(report);
+            if (mReports.size() > MAX_REPORTS) {
+                mReports.remove(0);
+            }
+        }
+    }
+
+    /**
+     * 主库文件和WAL文件的总大小
+     */
+    private long databaseSize() {
+        File database = mContext.getDatabasePath(DatabaseHelper.getHelper(mContext).getDatabaseName());
+        File wal = new File(database.getPath() + "-wal");
+        return database.length() + wal.length();
+    }
+
+    /**
+     * 执行PRAGMA并读完所有结果行，部分PRAGMA每读一行才执行一步
+     */
+    private static void drain(SQLiteDatabase database, String sql) {
+        Cursor cursor = database.rawQuery(sql, null);
+        try {
+            cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long pragmaLong(SQLiteDatabase database, String sql) {
+        Cursor cursor = database.rawQuery(sql, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String pragmaString(SQLiteDatabase database, String sql) {
+        Cursor cursor = database.rawQuery(sql, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.android.scaffold.db.maintenance;
+
+/**
+ * 一次维护的记录
+ */
+public class MaintenanceReport {
+    public final String step;
+    public final long sizeBefore;
+    public final long sizeAfter;
+    public final long elapsedMillis;
+
+    MaintenanceReport(String step, long sizeBefore, long sizeAfter, long elapsedMillis) {
+        this.step = step;
+        this.sizeBefore = sizeBefore;
+        this.sizeAfter = sizeAfter;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return step + ": " + sizeBefore + "B -> " + sizeAfter + "B in " + elapsedMillis + "ms";
+    }
+}
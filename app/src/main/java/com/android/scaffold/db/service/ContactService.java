@@ -1,9 +1,16 @@
 package com.android.scaffold.db.service;
 
 import android.content.Context;
+import android.database.Cursor;
 
+import com.android.scaffold.db.columnar.ContactTable;
 import com.android.scaffold.db.dao.base.BaseDao;
 import com.android.scaffold.db.entity.Contact;
+import com.j256.ormlite.stmt.QueryBuilder;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
 
 
 /**
@@ -12,9 +19,89 @@ import com.android.scaffold.db.entity.Contact;
 
 public class ContactService extends BaseDao<Contact, Long> {
 
+    private static final int ARCHIVE_CHUNK_SIZE = 500;
+
     public ContactService(Context context) {
         super(context);
     }
 
+    /**
+     * 把全部联系人按id顺序直接从Cursor读入列式存储，不创建Contact对象
+     *
+     * @return 只读的ContactTable
+     * @throws SQLException SQLException异常
+     */
+    public ContactTable queryColumnar() throws SQLException {
+        final ContactTable.Builder builder = new ContactTable.Builder((int) count());
+        queryCursor("SELECT id, name, age FROM tb_contact ORDER BY id", null, new CursorVisitor() {
+            @Override
+            public void visit(Cursor cursor) {
+                boolean ageNull = cursor.isNull(2);
+                builder.add(cursor.getLong(0), cursor.getString(1), ageNull, ageNull ? 0 : cursor.getInt(2));
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * 把超过maxAgeMillis未更新的联系人迁移到冷库
+     *
+     * @param maxAgeMillis 热数据保留时长
+     * @return 迁移的行数
+     * @throws SQLException SQLException异常
+     */
+    public int archiveStale(long maxAgeMillis) throws SQLException {
+        return archive(Contact.COLUMN_UPDATED_AT, System.currentTimeMillis() - maxAgeMillis, ARCHIVE_CHUNK_SIZE);
+    }
+
+    /**
+     * 按id顺序查询afterId之后的联系人，通过主键定位，不需要跳过前面的行
+     *
+     * @param afterId 起始id（不含），为null时从头查询
+     * @param limit   最多查询条数
+     * @return 查询结果集合
+     * @throws SQLException SQLException异常
+     */
+    public List<Contact> queryAfter(Long afterId, long limit) throws SQLException {
+        QueryBuilder<Contact, Long> queryBuilder = getDao().queryBuilder();
+        if (afterId != null) {
+            queryBuilder.where().gt("id", afterId);
+        }
+        queryBuilder.orderBy("id", true).limit(limit);
+        return query(queryBuilder.prepare());
+    }
+
+    /**
+     * 查询beforeId之前最近的limit个联系人，结果按id升序
+     *
+     * @param beforeId 结束id（不含）
+     * @param limit    最多查询条数
+     * @return 查询结果集合
+     * @throws SQLException SQLException异常
+     */
+    public List<Contact> queryBefore(long beforeId, long limit) throws SQLException {
+        QueryBuilder<Contact, Long> queryBuilder = getDao().queryBuilder();
+        queryBuilder.where().lt("id", beforeId);
+        queryBuilder.orderBy("id", false).limit(limit);
+        List<Contact> contacts = query(queryBuilder.prepare());
+        if (contacts != null) {
+            Collections.reverse(contacts);
+        }
+        return contacts;
+    }
+
+    /**
+     * 按id顺序分页查询联系人，需要跳过offset行，优先使用queryAfter
+     *
+     * @param offset 起始位置
+     * @param limit  最多查询条数
+     * @return 查询结果集合
+     * @throws SQLException SQLException异常
+     */
+    public List<Contact> queryPage(long offset, long limit) throws SQLException {
+        QueryBuilder<Contact, Long> queryBuilder = getDao().queryBuilder();
+        queryBuilder.orderBy("id", true).offset(offset).limit(limit);
+        return query(queryBuilder.prepare());
+    }
 
 }
@@ -0,0 +1,112 @@
+package com.android.scaffold.db.service;
+
+import android.content.Context;
+
+import com.android.scaffold.db.dao.base.BaseDao;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按类型缓存Dao和Service实例。
+ * 每个类型一个Holder，用putIfAbsent发布；命中时只读ConcurrentHashMap和Holder的volatile字段，
+ * 不加锁也不创建对象。factory在该类型自己的Holder锁内调用，保证每个类型只调用一次，
+ * 不同类型互不阻塞，也不会在全局锁内去拿DatabaseHelper的锁
+ */
+public final class ServiceLocator {
+
+    private static final ConcurrentHashMap<Class<?>, Holder> SERVICES = new ConcurrentHashMap<>();
+
+    private static final Factory<ContactService> CONTACT_SERVICE = new Factory<ContactService>() {
+        @Override
+        public ContactService create(Context context) {
+            return new ContactService(context);
+        }
+    };
+
+    private ServiceLocator() {
+    }
+
+    /**
+     * 创建实例，在对应类型的Holder锁内调用
+     */
+    public interface Factory<S> {
+        S create(Context context);
+    }
+
+    /**
+     * 获取缓存的实例，没有时用factory创建
+     *
+     * @param context context，原样传给factory
+     * @param key     缓存的键，Service用自身的类型，通用Dao用实体类型
+     * @param factory 创建实例
+     * @return 实例
+     */
+    @SuppressWarnings("unchecked")
+    public static <S> S get(Context context, Class<?> key, Factory<S> factory) {
+        Holder holder = SERVICES.get(key);
+        if (holder == null) {
+            Holder created = new Holder();
+            holder = SERVICES.putIfAbsent(key, created);
+            if (holder == null) {
+                holder = created;
+            }
+        }
+        return (S) holder.get(context, factory);
+    }
+
+    public static ContactService getContactService(Context context) {
+        return get(context, ContactService.class, CONTACT_SERVICE);
+    }
+
+    /**
+     * 获取实体对应的通用Dao，不需要为每个实体写子类
+     *
+     * @param context     context
+     * @param entityClass 实体类型
+     * @return BaseDao
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, ID> BaseDao<T, ID> getDao(Context context, final Class<T> entityClass) {
+        //factory要捕获entityClass，只在未命中时创建
+        Holder holder = SERVICES.get(entityClass);
+        Object dao = holder == null ? null : holder.mValue;
+        if (dao != null) {
+            return (BaseDao<T, ID>) dao;
+        }
+        return get(context, entityClass, new Factory<BaseDao<T, ID>>() {
+            @Override
+            public BaseDao<T, ID> create(Context context) {
+                return new BaseDao<T, ID>(context, entityClass);
+            }
+        });
+    }
+
+    /**
+     * 清空缓存，数据库被替换后调用。不加锁，可以在持有其他锁时调用；
+     * 正在创建的实例仍会返回给它的调用方，但不会留在缓存中
+     */
+    public static void clear() {
+        SERVICES.clear();
+    }
+
+    /**
+     * 单个类型的实例，创建前为null
+     */
+    private static final class Holder {
+        volatile Object mValue;
+
+        Object get(Context context, Factory<?> factory) {
+            Object value = mValue;
+            if (value == null) {
+                synchronized (this) {
+                    value = mValue;
+                    if (value == null) {
+                        value = factory.create(context);
+                        mValue = value;
+                    }
+                }
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.android.scaffold.db.transfer;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 按RowFormat流式导出、导入一张表，内存占用与行数无关。
+ * 导出按rowid分批查询，直接从Cursor按存储类型取值；导入复用同一条预编译的INSERT OR REPLACE，按块提交事务
+ */
+public final class EntityTransfer {
+    /**
+     * 导出时每次查询的行数，一批能放进一个CursorWindow，读完即释放连接
+     */
+    private static final int EXPORT_BATCH_ROWS = 500;
+
+    private EntityTransfer() {
+    }
+
+    /**
+     * 每提交一个块回调一次
+     */
+    public interface ChunkListener {
+        void onChunk(int rows);
+    }
+
+    /**
+     * 导出整张表，按rowid顺序。每批用rowid定位（WHERE rowid > ? LIMIT n），
+     * 每条查询只短暂占用连接，批与批之间其他读写照常进行，写入channel时不占用数据库。
+     * 因此导出不是同一时刻的快照：导出期间修改的行可能是修改前或修改后的值，
+     * 新增的行rowid更大时会被导出，不会重复或遗漏未修改的行
+     *
+     * @return 导出的行数
+     */
+    public static long export(SQLiteDatabase database, String table, String[] columns, WritableByteChannel channel)
+            throws IOException {
+        RowWriter writer = new RowWriter(channel);
+        writer.writeHeader(table, columns);
+        //rowid放在最后一列，用于定位下一批
+        String sql = "SELECT " + join(columns) + ", rowid FROM `" + table + "`"
+                + " WHERE rowid > CAST(? AS INTEGER) ORDER BY rowid LIMIT " + EXPORT_BATCH_ROWS;
+        int count = columns.length;
+        long lastRowId = Long.MIN_VALUE;
+        while (true) {
+            Cursor cursor = database.rawQuery(sql, new String[]{String.valueOf(lastRowId)});
+            int rows;
+            try {
+                //先填满CursorWindow，之后遍历和写channel都不占用连接
+                rows = cursor.getCount();
+                while (cursor.moveToNext()) {
+                    writer.beginRow();
+                    for (int i = 0; i < count; i++) {
+                        switch (cursor.getType(i)) {
+                            case Cursor.FIELD_TYPE_NULL:
+                                writer.writeNull();
+                                break;
+                            case Cursor.FIELD_TYPE_INTEGER:
+                                writer.writeLong(cursor.getLong(i));
+                                break;
+                            case Cursor.FIELD_TYPE_FLOAT:
+                                writer.writeDouble(cursor.getDouble(i));
+                                break;
+                            case Cursor.FIELD_TYPE_BLOB:
+                                writer.writeBlob(cursor.getBlob(i));
+                                break;
+                            default:
+                                writer.writeText(cursor.getString(i));
+                                break;
+                        }
+                    }
+                    lastRowId = cursor.getLong(count);
+                }
+            } finally {
+                cursor.close();
+            }
+            if (rows < EXPORT_BATCH_ROWS) {
+                break;
+            }
+        }
+        return writer.finish();
+    }
+
+    /**
+     * 导入到表中，主键相同的行被替换。出错时只回滚当前块，之前提交的块保留
+     *
+     * @param table        目标表
+     * @param knownColumns 目标表的列，文件中出现其他列时拒绝导入；文件中缺少的列使用默认值
+     * @param chunkSize    每个事务的行数
+     * @param listener     块提交后回调，可为null
+     * @return 导入的行数
+     */
+    public static long importRows(SQLiteDatabase database, String table, Collection<String> knownColumns,
+                                  ReadableByteChannel channel, int chunkSize, ChunkListener listener) throws IOException {
+        RowReader reader = new RowReader(channel);
+        RowReader.Header header = reader.readHeader();
+        for (String column : header.columns) {
+            if (!knownColumns.contains(column)) {
+                throw new IOException("column " + column + " of " + header.table + " does not exist in " + table);
+            }
+        }
+        int count = header.columns.length;
+        char[] placeholders = new char[count * 2 - 1];
+        Arrays.fill(placeholders, ',');
+        for (int i = 0; i < count; i++) {
+            placeholders[i * 2] = '?';
+        }
+        SQLiteStatement insert = database.compileStatement("INSERT OR REPLACE INTO `" + table + "` ("
+                + join(header.columns) + ") VALUES (" + new String(placeholders) + ")");
+        long total = 0;
+        try {
+            boolean more = true;
+            while (more) {
+                int rows = 0;
+                database.beginTransaction();
+                try {
+                    while (rows < chunkSize && (more = reader.nextRow())) {
+                        for (int i = 1; i <= count; i++) {
+                            switch (reader.nextType()) {
+                                case RowFormat.TYPE_NULL:
+                                    insert.bindNull(i);
+                                    break;
+                                case RowFormat.TYPE_INTEGER:
+                                    insert.bindLong(i, reader.readLong());
+                                    break;
+                                case RowFormat.TYPE_FLOAT:
+                                    insert.bindDouble(i, reader.readDouble());
+                                    break;
+                                case RowFormat.TYPE_TEXT:
+                                    insert.bindString(i, reader.readText());
+                                    break;
+                                case RowFormat.TYPE_BLOB:
+                                    insert.bindBlob(i, reader.readBlob());
+                                    break;
+                                default:
+                                    throw new IOException("unknown value type in row " + (total + rows + 1));
+                            }
+                        }
+                        insert.executeInsert();
+                        rows++;
+                    }
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+                total += rows;
+                if (listener != null && rows > 0) {
+                    listener.onChunk(rows);
+                }
+            }
+        } finally {
+            insert.close();
+        }
+        return total;
+    }
+
+    private static String join(String[] columns) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append('`').append(columns[i]).append('`');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package com.android.scaffold.db.transfer;
+
+import java.nio.charset.Charset;
+
+/**
+ * 实体批量导入导出使用的二进制格式
+ * <pre>
+ * 文件头: MAGIC(4) VERSION(1) 表名(text) 列数(varint) 列名(text)...
+ * 每行:   TAG_ROW(1) 按列顺序的值
+ * 值:     类型(1) + 内容。INTEGER为zigzag varint，FLOAT为8字节，TEXT/BLOB为varint长度 + 字节
+ * 结尾:   TAG_END(1) 行数(varint)
+ * </pre>
+ * 多字节数值均为大端序
+ */
+final class RowFormat {
+    static final int MAGIC = 0x53434258;
+    static final byte VERSION = 1;
+
+    static final byte TAG_ROW = 1;
+    static final byte TAG_END = 2;
+
+    /**
+     * 值类型，与SQLite的存储类型一一对应
+     */
+    static final byte TYPE_NULL = 0;
+    static final byte TYPE_INTEGER = 1;
+    static final byte TYPE_FLOAT = 2;
+    static final byte TYPE_TEXT = 3;
+    static final byte TYPE_BLOB = 4;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 列数上限，与SQLite默认的SQLITE_MAX_COLUMN相同
+     */
+    static final int MAX_COLUMNS = 2000;
+    /**
+     * 单个TEXT/BLOB的字节数上限。Android上经Cursor读取的单行不超过CursorWindow的2MB，
+     * 读取时超过上限视为数据损坏，避免按损坏的长度分配内存
+     */
+    static final int MAX_VALUE_BYTES = 16 * 1024 * 1024;
+
+    private RowFormat() {
+    }
+}
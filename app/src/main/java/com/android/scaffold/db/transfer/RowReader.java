@@ -0,0 +1,185 @@
+package com.android.scaffold.db.transfer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * 按RowFormat从channel读取行，内部只有一块固定大小的缓冲区。
+ * 列数和值长度在分配前校验，损坏的数据一律抛出IOException
+ */
+public class RowReader {
+    private final ReadableByteChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private long mRows;
+
+    public RowReader(ReadableByteChannel channel) {
+        this(channel, RowFormat.DEFAULT_BUFFER_SIZE);
+    }
+
+    public RowReader(ReadableByteChannel channel, int bufferSize) {
+        mChannel = channel;
+        mBuffer = ByteBuffer.allocate(Math.max(bufferSize, 16));
+        mBuffer.flip();
+    }
+
+    /**
+     * 文件头
+     */
+    public static class Header {
+        public final String table;
+        public final String[] columns;
+
+        Header(String table, String[] columns) {
+            this.table = table;
+            this.columns = columns;
+        }
+    }
+
+    public Header readHeader() throws IOException {
+        require(5);
+        if (mBuffer.getInt() != RowFormat.MAGIC) {
+            throw new IOException("not an entity export stream");
+        }
+        byte version = mBuffer.get();
+        if (version != RowFormat.VERSION) {
+            throw new IOException("unsupported format version " + version);
+        }
+        String table = getText();
+        long count = getVarint();
+        if (count <= 0 || count > RowFormat.MAX_COLUMNS) {
+            throw new IOException("invalid column count " + count);
+        }
+        String[] columns = new String[(int) count];
+        for (int i = 0; i < count; i++) {
+            columns[i] = getText();
+        }
+        return new Header(table, columns);
+    }
+
+    /**
+     * 移动到下一行
+     *
+     * @return 读到结尾标记时返回false
+     * @throws IOException 格式错误、行数与结尾记录不符或数据被截断
+     */
+    public boolean nextRow() throws IOException {
+        require(1);
+        byte tag = mBuffer.get();
+        if (tag == RowFormat.TAG_ROW) {
+            mRows++;
+            return true;
+        }
+        if (tag == RowFormat.TAG_END) {
+            long expected = getVarint();
+            if (expected != mRows) {
+                throw new IOException("expected " + expected + " rows but read " + mRows);
+            }
+            return false;
+        }
+        throw new IOException("unexpected tag " + tag + " after row " + mRows);
+    }
+
+    /**
+     * 读取下一个值的类型，随后按类型调用对应的read方法；TYPE_NULL没有内容
+     */
+    public byte nextType() throws IOException {
+        require(1);
+        return mBuffer.get();
+    }
+
+    public long readLong() throws IOException {
+        long value = getVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public double readDouble() throws IOException {
+        require(8);
+        return mBuffer.getDouble();
+    }
+
+    public String readText() throws IOException {
+        return getText();
+    }
+
+    public byte[] readBlob() throws IOException {
+        int length = getLength();
+        byte[] value = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            if (!mBuffer.hasRemaining()) {
+                fill(1);
+            }
+            int n = Math.min(length - offset, mBuffer.remaining());
+            mBuffer.get(value, offset, n);
+            offset += n;
+        }
+        return value;
+    }
+
+    private String getText() throws IOException {
+        int length = getLength();
+        if (length <= mBuffer.capacity()) {
+            //直接从缓冲区解码，不额外复制
+            require(length);
+            String value = new String(mBuffer.array(), mBuffer.arrayOffset() + mBuffer.position(), length, RowFormat.UTF_8);
+            mBuffer.position(mBuffer.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            if (!mBuffer.hasRemaining()) {
+                fill(1);
+            }
+            int n = Math.min(length - offset, mBuffer.remaining());
+            mBuffer.get(bytes, offset, n);
+            offset += n;
+        }
+        return new String(bytes, RowFormat.UTF_8);
+    }
+
+    /**
+     * 读取TEXT/BLOB的长度，负数（varint超出int）或超过MAX_VALUE_BYTES时视为数据损坏
+     */
+    private int getLength() throws IOException {
+        long length = getVarint();
+        if (length < 0 || length > RowFormat.MAX_VALUE_BYTES) {
+            throw new IOException("invalid value length " + length + " after row " + mRows);
+        }
+        return (int) length;
+    }
+
+    private long getVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            require(1);
+            byte b = mBuffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private void require(int bytes) throws IOException {
+        if (mBuffer.remaining() < bytes) {
+            fill(bytes);
+        }
+    }
+
+    private void fill(int bytes) throws IOException {
+        mBuffer.compact();
+        try {
+            while (mBuffer.position() < bytes) {
+                if (mChannel.read(mBuffer) < 0) {
+                    throw new EOFException("stream truncated after row " + mRows);
+                }
+            }
+        } finally {
+            mBuffer.flip();
+        }
+    }
+}
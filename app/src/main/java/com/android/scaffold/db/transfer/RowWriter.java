@@ -0,0 +1,131 @@
+package com.android.scaffold.db.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 按RowFormat把行写入channel，内部只有一块固定大小的缓冲区
+ */
+public class RowWriter {
+    private final WritableByteChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private long mRows;
+
+    public RowWriter(WritableByteChannel channel) {
+        this(channel, RowFormat.DEFAULT_BUFFER_SIZE);
+    }
+
+    public RowWriter(WritableByteChannel channel, int bufferSize) {
+        mChannel = channel;
+        //varint最长10字节，缓冲区至少要放下一个完整的标量
+        mBuffer = ByteBuffer.allocate(Math.max(bufferSize, 16));
+    }
+
+    public void writeHeader(String table, String[] columns) throws IOException {
+        if (columns.length == 0 || columns.length > RowFormat.MAX_COLUMNS) {
+            throw new IllegalArgumentException("column count " + columns.length + " out of range");
+        }
+        ensure(5);
+        mBuffer.putInt(RowFormat.MAGIC);
+        mBuffer.put(RowFormat.VERSION);
+        putText(table);
+        putVarint(columns.length);
+        for (String column : columns) {
+            putText(column);
+        }
+    }
+
+    public void beginRow() throws IOException {
+        ensure(1);
+        mBuffer.put(RowFormat.TAG_ROW);
+        mRows++;
+    }
+
+    public void writeNull() throws IOException {
+        ensure(1);
+        mBuffer.put(RowFormat.TYPE_NULL);
+    }
+
+    public void writeLong(long value) throws IOException {
+        ensure(1);
+        mBuffer.put(RowFormat.TYPE_INTEGER);
+        putVarint((value << 1) ^ (value >> 63));
+    }
+
+    public void writeDouble(double value) throws IOException {
+        ensure(9);
+        mBuffer.put(RowFormat.TYPE_FLOAT);
+        mBuffer.putDouble(value);
+    }
+
+    public void writeText(String value) throws IOException {
+        ensure(1);
+        mBuffer.put(RowFormat.TYPE_TEXT);
+        putText(value);
+    }
+
+    public void writeBlob(byte[] value) throws IOException {
+        ensure(1);
+        mBuffer.put(RowFormat.TYPE_BLOB);
+        putBytes(value);
+    }
+
+    /**
+     * 写入结尾标记和行数并清空缓冲区，不关闭channel
+     *
+     * @return 写入的行数
+     */
+    public long finish() throws IOException {
+        ensure(1);
+        mBuffer.put(RowFormat.TAG_END);
+        putVarint(mRows);
+        flush();
+        return mRows;
+    }
+
+    public void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    private void putText(String value) throws IOException {
+        putBytes(value.getBytes(RowFormat.UTF_8));
+    }
+
+    private void putBytes(byte[] value) throws IOException {
+        if (value.length > RowFormat.MAX_VALUE_BYTES) {
+            throw new IOException("value of " + value.length + " bytes exceeds " + RowFormat.MAX_VALUE_BYTES);
+        }
+        putVarint(value.length);
+        if (value.length <= mBuffer.capacity()) {
+            ensure(value.length);
+            mBuffer.put(value);
+            return;
+        }
+        //超过缓冲区的值直接写入channel
+        flush();
+        ByteBuffer wrap = ByteBuffer.wrap(value);
+        while (wrap.hasRemaining()) {
+            mChannel.write(wrap);
+        }
+    }
+
+    private void putVarint(long value) throws IOException {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            mBuffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        mBuffer.put((byte) value);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (mBuffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
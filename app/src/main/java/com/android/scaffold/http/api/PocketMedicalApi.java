@@ -1,6 +1,14 @@
 package com.android.scaffold.http.api;
 
 
+import com.android.scaffold.http.converter.StreamingConverterFactory;
+import com.android.scaffold.http.interceptor.AdaptiveConcurrencyInterceptor;
+import com.android.scaffold.http.interceptor.AimdLimiter;
+import com.android.scaffold.http.interceptor.EndpointLatencies;
+import com.android.scaffold.http.interceptor.HedgingInterceptor;
+import com.android.scaffold.http.interceptor.RetryInterceptor;
+import com.android.scaffold.http.service.PocketMedicalService;
+import com.android.scaffold.startup.StartupTracer;
 import com.wgl.android.library.http.HttpRequestHelper;
 
 import java.io.IOException;
@@ -8,8 +16,11 @@ import java.util.List;
 
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
 
 /**
  * Created by wuganlin on 2017/3/31.
@@ -17,21 +28,100 @@ import okhttp3.Response;
 
 public class PocketMedicalApi extends HttpRequestHelper {
     public static final String BASE_URL = "https://192.168.1.50:8888/PocketMedical/";
-    private static PocketMedicalApi instance;
+    private final EndpointLatencies mLatencies = new EndpointLatencies();
+    private final AimdLimiter mLimiter = new AimdLimiter();
+    private volatile PocketMedicalService mService;
 
     private PocketMedicalApi() {
         super(BASE_URL);
     }
 
+    /**
+     * 首次调用getInstance时由类加载器完成初始化，之后的访问不加锁
+     */
+    private static class Holder {
+        static final PocketMedicalApi INSTANCE = create();
+
+        private static PocketMedicalApi create() {
+            StartupTracer.begin("PocketMedicalApi.getInstance");
+            PocketMedicalApi api = new PocketMedicalApi();
+            StartupTracer.end("PocketMedicalApi.getInstance");
+            return api;
+        }
+    }
+
     public static PocketMedicalApi getInstance() {
-        if (instance == null) {
-            synchronized (PocketMedicalApi.class) {
-                if (instance == null) {
-                    instance = new PocketMedicalApi();
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 提供PocketMedicalService，响应体通过StreamingConverterFactory增量解析，
+     * 请求经过幂等重试和自适应并发限制，标记了X-Hedge的GET请求会做对冲
+     *
+     * @return PocketMedicalService
+     */
+    public PocketMedicalService getService() {
+        PocketMedicalService service = mService;
+        if (service == null) {
+            synchronized (this) {
+                service = mService;
+                if (service == null) {
+                    service = newRetrofit(BASE_URL, createClient(mLimiter, mLatencies))
+                            .create(PocketMedicalService.class);
+                    mService = service;
                 }
             }
         }
-        return instance;
+        return service;
+    }
+
+    /**
+     * 用与getService相同的业务拦截器创建OkHttpClient，压测时传入独立的并发上限和耗时记录
+     *
+     * @param limiter   并发上限
+     * @param latencies 按接口的请求耗时记录
+     * @return OkHttpClient
+     */
+    public OkHttpClient createClient(AimdLimiter limiter, EndpointLatencies latencies) {
+        return newClient(onCreateInterceptors(), limiter, latencies);
+    }
+
+    /**
+     * 创建带重试、并发限制和对冲的OkHttpClient
+     *
+     * @param interceptors   业务拦截器，例如鉴权
+     * @param limiter        并发上限
+     * @param latencies      按接口的请求耗时记录，用于对冲延迟
+     * @return OkHttpClient
+     */
+    public static OkHttpClient newClient(List<Interceptor> interceptors, AimdLimiter limiter, EndpointLatencies latencies) {
+        OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder();
+        for (Interceptor interceptor : interceptors) {
+            clientBuilder.addInterceptor(interceptor);
+        }
+        //重试在外层，每次重试都重新获取并发许可
+        clientBuilder.addInterceptor(new RetryInterceptor());
+        clientBuilder.addInterceptor(new AdaptiveConcurrencyInterceptor(limiter, latencies));
+        OkHttpClient delegate = clientBuilder.build();
+        OkHttpClient.Builder hedgingBuilder = delegate.newBuilder();
+        hedgingBuilder.interceptors().add(0, new HedgingInterceptor(delegate, latencies));
+        return hedgingBuilder.build();
+    }
+
+    /**
+     * 创建与PocketMedicalService配套的Retrofit
+     *
+     * @param baseUrl 服务地址
+     * @param client  OkHttpClient
+     * @return Retrofit
+     */
+    public static Retrofit newRetrofit(String baseUrl, OkHttpClient client) {
+        return new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .client(client)
+                .addConverterFactory(StreamingConverterFactory.create())
+                .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
+                .build();
     }
 
     @Override
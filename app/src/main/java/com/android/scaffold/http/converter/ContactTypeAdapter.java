@@ -0,0 +1,62 @@
+package com.android.scaffold.http.converter;
+
+import com.android.scaffold.db.entity.Contact;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Contact的手写TypeAdapter，逐字段读写，不经过Gson的反射绑定
+ */
+public class ContactTypeAdapter extends TypeAdapter<Contact> {
+
+    @Override
+    public void write(JsonWriter out, Contact contact) throws IOException {
+        if (contact == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(contact.getId());
+        out.name("name").value(contact.getName());
+        out.name("age").value(contact.getAge());
+        out.endObject();
+    }
+
+    @Override
+    public Contact read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Contact contact = new Contact();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    contact.setId(in.nextLong());
+                    break;
+                case "name":
+                    contact.setName(in.nextString());
+                    break;
+                case "age":
+                    contact.setAge(in.nextInt());
+                    break;
+                default:
+                    //未知字段直接跳过，兼容服务端新增字段
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return contact;
+    }
+}
@@ -0,0 +1,110 @@
+package com.android.scaffold.http.converter;
+
+import com.android.scaffold.http.response.base.JSONResult;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import okhttp3.ResponseBody;
+
+/**
+ * 逐条读取data为数组的JSONResult，每解析出一个元素就交给ElementSink，
+ * 整个数组不会同时驻留在内存中
+ */
+public final class JSONResultStreamReader {
+
+    private JSONResultStreamReader() {
+    }
+
+    /**
+     * 元素接收者，例如分批写入数据库
+     * T 元素类型
+     */
+    public interface ElementSink<T> {
+        void onElement(T element) throws IOException;
+    }
+
+    /**
+     * 从ResponseBody读取，读取结束后关闭body
+     *
+     * @param body          响应体
+     * @param elementAdapter 数组元素的TypeAdapter
+     * @param sink          元素接收者
+     * @return data为已读取元素个数的JSONResult
+     * @throws IOException IOException异常
+     */
+    public static <T> JSONResult<Integer> read(ResponseBody body, TypeAdapter<T> elementAdapter, ElementSink<T> sink) throws IOException {
+        try {
+            return read(body.charStream(), elementAdapter, sink);
+        } finally {
+            body.close();
+        }
+    }
+
+    /**
+     * 从字符流读取
+     *
+     * @param source         字符流
+     * @param elementAdapter 数组元素的TypeAdapter
+     * @param sink           元素接收者
+     * @return data为已读取元素个数的JSONResult
+     * @throws IOException IOException异常
+     */
+    public static <T> JSONResult<Integer> read(Reader source, TypeAdapter<T> elementAdapter, ElementSink<T> sink) throws IOException {
+        JsonReader in = new JsonReader(source);
+        JSONResult<Integer> result = new JSONResult<>();
+        int count = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "errorcode":
+                    result.errorcode = readNullableInt(in);
+                    break;
+                case "errormsg":
+                    result.errormsg = readNullableString(in);
+                    break;
+                case "data":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        break;
+                    }
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        T element = elementAdapter.read(in);
+                        if (element != null) {
+                            sink.onElement(element);
+                            count++;
+                        }
+                    }
+                    in.endArray();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        result.data = count;
+        return result;
+    }
+
+    static Integer readNullableInt(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+
+    static String readNullableString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+}
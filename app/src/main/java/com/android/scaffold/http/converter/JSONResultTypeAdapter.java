@@ -0,0 +1,64 @@
+package com.android.scaffold.http.converter;
+
+import com.android.scaffold.http.response.base.JSONResult;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * JSONResult的手写TypeAdapter，data字段交给对应类型的TypeAdapter解析
+ * T data的类型
+ */
+public class JSONResultTypeAdapter<T> extends TypeAdapter<JSONResult<T>> {
+    private final TypeAdapter<T> mDataAdapter;
+
+    public JSONResultTypeAdapter(TypeAdapter<T> dataAdapter) {
+        mDataAdapter = dataAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, JSONResult<T> result) throws IOException {
+        if (result == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("errorcode").value(result.errorcode);
+        out.name("errormsg").value(result.errormsg);
+        out.name("data");
+        mDataAdapter.write(out, result.data);
+        out.endObject();
+    }
+
+    @Override
+    public JSONResult<T> read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        JSONResult<T> result = new JSONResult<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "errorcode":
+                    result.errorcode = JSONResultStreamReader.readNullableInt(in);
+                    break;
+                case "errormsg":
+                    result.errormsg = JSONResultStreamReader.readNullableString(in);
+                    break;
+                case "data":
+                    result.data = mDataAdapter.read(in);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return result;
+    }
+}
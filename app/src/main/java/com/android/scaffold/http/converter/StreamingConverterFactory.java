@@ -0,0 +1,83 @@
+package com.android.scaffold.http.converter;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * 响应体直接从字符流增量解析，不先读成String或JsonElement树
+ */
+public class StreamingConverterFactory extends Converter.Factory {
+    private final Gson mGson;
+    private final GsonConverterFactory mRequestFactory;
+
+    private StreamingConverterFactory(Gson gson) {
+        mGson = gson;
+        mRequestFactory = GsonConverterFactory.create(gson);
+    }
+
+    public static StreamingConverterFactory create() {
+        return new StreamingConverterFactory(newGson());
+    }
+
+    /**
+     * 提供注册了手写TypeAdapter的Gson
+     *
+     * @return Gson对象
+     */
+    public static Gson newGson() {
+        return new GsonBuilder()
+                .registerTypeAdapterFactory(new StreamingTypeAdapterFactory())
+                .create();
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        if (type == ResponseBody.class) {
+            //ResponseBody原样交给调用方，用于逐条处理的接口
+            return null;
+        }
+        return new StreamingResponseBodyConverter<>(mGson.getAdapter(TypeToken.get(type)));
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations, Annotation[] methodAnnotations, Retrofit retrofit) {
+        return mRequestFactory.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+    }
+
+    private static class StreamingResponseBodyConverter<T> implements Converter<ResponseBody, T> {
+        private final TypeAdapter<T> mAdapter;
+
+        StreamingResponseBodyConverter(TypeAdapter<T> adapter) {
+            mAdapter = adapter;
+        }
+
+        @Override
+        public T convert(ResponseBody value) throws IOException {
+            JsonReader reader = new JsonReader(value.charStream());
+            try {
+                T result = mAdapter.read(reader);
+                if (reader.peek() != JsonToken.END_DOCUMENT) {
+                    throw new JsonIOException("JSON document was not fully consumed.");
+                }
+                return result;
+            } finally {
+                value.close();
+            }
+        }
+    }
+}
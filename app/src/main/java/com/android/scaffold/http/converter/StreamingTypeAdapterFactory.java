@@ -0,0 +1,36 @@
+package com.android.scaffold.http.converter;
+
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.http.response.base.JSONResult;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * 注册手写的TypeAdapter，JSONResult和Contact不再走反射绑定，其余类型交还给Gson
+ */
+public class StreamingTypeAdapterFactory implements TypeAdapterFactory {
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+        Class<? super T> rawType = typeToken.getRawType();
+        if (rawType == Contact.class) {
+            return (TypeAdapter<T>) new ContactTypeAdapter();
+        }
+        if (rawType == JSONResult.class) {
+            Type type = typeToken.getType();
+            Type dataType = Object.class;
+            if (type instanceof ParameterizedType) {
+                dataType = ((ParameterizedType) type).getActualTypeArguments()[0];
+            }
+            TypeAdapter<?> dataAdapter = gson.getAdapter(TypeToken.get(dataType));
+            return (TypeAdapter<T>) (TypeAdapter) new JSONResultTypeAdapter<>(dataAdapter);
+        }
+        return null;
+    }
+}
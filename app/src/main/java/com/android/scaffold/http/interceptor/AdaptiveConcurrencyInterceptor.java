@@ -0,0 +1,67 @@
+package com.android.scaffold.http.interceptor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * 自适应并发限制，请求先从AimdLimiter获取许可，并把耗时按接口记录到EndpointLatencies。
+ * 被取消的请求（例如对冲中落败的一方）不算过载信号
+ */
+public class AdaptiveConcurrencyInterceptor implements Interceptor {
+    private static final long ACQUIRE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    /**
+     * 超过该耗时视为过载信号
+     */
+    private static final long SLOW_RESPONSE_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final AimdLimiter mLimiter;
+    private final EndpointLatencies mLatencies;
+
+    public AdaptiveConcurrencyInterceptor(AimdLimiter limiter, EndpointLatencies latencies) {
+        mLimiter = limiter;
+        mLatencies = latencies;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        try {
+            if (!mLimiter.acquire(ACQUIRE_TIMEOUT_MILLIS)) {
+                throw new InterruptedIOException("concurrency limit " + mLimiter.getLimit() + " reached");
+            }
+        } catch (InterruptedException e) {
+            //恢复中断标记，RetryInterceptor据此不再重试
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for concurrency limit");
+        }
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException e) {
+            if (chain.call().isCanceled()) {
+                mLimiter.onIgnored();
+            } else {
+                mLimiter.onDropped();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            mLimiter.onIgnored();
+            throw e;
+        }
+        long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        int code = response.code();
+        if (code == 429 || code >= 500 || latencyMillis > SLOW_RESPONSE_MILLIS) {
+            mLimiter.onDropped();
+        } else if (response.isSuccessful()) {
+            mLatencies.get(chain.request()).record(latencyMillis);
+            mLimiter.onSuccess();
+        } else {
+            mLimiter.onIgnored();
+        }
+        return response;
+    }
+}
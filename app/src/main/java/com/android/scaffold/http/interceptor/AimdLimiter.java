@@ -0,0 +1,87 @@
+package com.android.scaffold.http.interceptor;
+
+/**
+ * AIMD并发上限：请求正常时上限加性增长，出现超时、限流或服务端错误时乘性下降
+ */
+public class AimdLimiter {
+    private final int mMinLimit;
+    private final int mMaxLimit;
+    private final double mBackoffRatio;
+    private double mLimit;
+    private int mInFlight;
+
+    public AimdLimiter() {
+        this(4, 1, 32, 0.7);
+    }
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("invalid limits!");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be in (0, 1)!");
+        }
+        mMinLimit = minLimit;
+        mMaxLimit = maxLimit;
+        mBackoffRatio = backoffRatio;
+        mLimit = initialLimit;
+    }
+
+    /**
+     * 获取一个许可，超过并发上限时等待
+     *
+     * @param timeoutMillis 最长等待时间，毫秒
+     * @return 是否获取成功
+     * @throws InterruptedException 等待时线程被中断
+     */
+    public synchronized boolean acquire(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (mInFlight >= (int) mLimit) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        mInFlight++;
+        return true;
+    }
+
+    /**
+     * 请求正常完成，只有并发接近上限时才增长，避免空闲时上限虚高
+     */
+    public synchronized void onSuccess() {
+        if (mInFlight * 2 >= mLimit) {
+            mLimit = Math.min(mMaxLimit, mLimit + 1 / mLimit);
+        }
+        release();
+    }
+
+    /**
+     * 请求超时、被限流或服务端过载
+     */
+    public synchronized void onDropped() {
+        mLimit = Math.max(mMinLimit, mLimit * mBackoffRatio);
+        release();
+    }
+
+    /**
+     * 请求结束但不影响上限，例如客户端错误
+     */
+    public synchronized void onIgnored() {
+        release();
+    }
+
+    public synchronized int getLimit() {
+        return (int) mLimit;
+    }
+
+    public synchronized int getInFlight() {
+        return mInFlight;
+    }
+
+    private void release() {
+        mInFlight--;
+        notifyAll();
+    }
+}
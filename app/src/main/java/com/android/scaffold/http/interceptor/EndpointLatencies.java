@@ -0,0 +1,40 @@
+package com.android.scaffold.http.interceptor;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Request;
+
+/**
+ * 按接口（方法+路径）分别记录耗时，避免大分页接口拉高点查接口的对冲延迟
+ */
+public class EndpointLatencies {
+    /**
+     * 超过该数量的接口共用一个记录，防止路径中带参数时无限增长
+     */
+    private static final int MAX_ENDPOINTS = 64;
+
+    private final ConcurrentHashMap<String, LatencyTracker> mTrackers = new ConcurrentHashMap<>();
+    private final LatencyTracker mOverflow = new LatencyTracker();
+
+    /**
+     * 获取请求所属接口的耗时记录
+     *
+     * @param request 请求
+     * @return LatencyTracker
+     */
+    public LatencyTracker get(Request request) {
+        String key = request.method() + " " + request.url().encodedPath();
+        LatencyTracker tracker = mTrackers.get(key);
+        if (tracker == null) {
+            if (mTrackers.size() >= MAX_ENDPOINTS) {
+                return mOverflow;
+            }
+            LatencyTracker created = new LatencyTracker();
+            tracker = mTrackers.putIfAbsent(key, created);
+            if (tracker == null) {
+                tracker = created;
+            }
+        }
+        return tracker;
+    }
+}
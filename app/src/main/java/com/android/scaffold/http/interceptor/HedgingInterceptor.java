@@ -0,0 +1,181 @@
+package com.android.scaffold.http.interceptor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 对标记了X-Hedge头的GET请求做对冲：首个请求超过该接口的p95耗时仍未返回时再发一个相同请求，
+ * 取先成功的响应，取消另一个。请求由不含本拦截器的delegate客户端发出。
+ * 等待期间定期检查外层请求是否被取消，被取消时同时取消两个delegate请求，释放它们占用的并发许可
+ */
+public class HedgingInterceptor implements Interceptor {
+    public static final String HEADER_HEDGE = "X-Hedge";
+    /**
+     * 样本不足时使用的对冲延迟
+     */
+    private static final long DEFAULT_DELAY_MILLIS = 1000;
+    private static final int MIN_SAMPLES = 20;
+    /**
+     * 等待结果时检查外层请求是否取消的间隔
+     */
+    private static final long CANCEL_CHECK_MILLIS = 50;
+    /**
+     * await的返回值，表示外层请求已取消
+     */
+    private static final Outcome CANCELED = new Outcome(null, null, null);
+
+    private final OkHttpClient mDelegate;
+    private final EndpointLatencies mLatencies;
+
+    public HedgingInterceptor(OkHttpClient delegate, EndpointLatencies latencies) {
+        mDelegate = delegate;
+        mLatencies = latencies;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header(HEADER_HEDGE) == null) {
+            return chain.proceed(request);
+        }
+        request = request.newBuilder().removeHeader(HEADER_HEDGE).build();
+        if (!"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+        Call outer = chain.call();
+        Exchange exchange = new Exchange();
+        Call primary = mDelegate.newCall(request);
+        Call hedge = null;
+        primary.enqueue(exchange);
+        try {
+            Outcome first = await(exchange, outer, hedgeDelayMillis(request));
+            if (first == null) {
+                hedge = mDelegate.newCall(request);
+                hedge.enqueue(exchange);
+                first = await(exchange, outer, -1);
+            }
+            Outcome winner = first;
+            if (first != CANCELED && first.mResponse == null && hedge != null) {
+                //先返回的请求失败了，等待另一个
+                winner = await(exchange, outer, -1);
+            }
+            exchange.settle();
+            if (winner == CANCELED) {
+                primary.cancel();
+                if (hedge != null) {
+                    hedge.cancel();
+                }
+                throw new IOException("Canceled");
+            }
+            //取消落败的一方，释放它的连接和并发许可
+            if (winner.mCall == primary) {
+                if (hedge != null) {
+                    hedge.cancel();
+                }
+            } else {
+                primary.cancel();
+            }
+            if (winner.mResponse == null) {
+                throw winner.mError;
+            }
+            return winner.mResponse;
+        } catch (InterruptedException e) {
+            exchange.settle();
+            primary.cancel();
+            if (hedge != null) {
+                hedge.cancel();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while hedging " + request.url());
+        }
+    }
+
+    /**
+     * 等待下一个结果，外层请求被取消时返回CANCELED
+     *
+     * @param timeoutMillis 最长等待时间，小于0时一直等到有结果或被取消
+     * @return 结果，超时返回null
+     */
+    private static Outcome await(Exchange exchange, Call outer, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!outer.isCanceled()) {
+            long waitMillis = CANCEL_CHECK_MILLIS;
+            if (timeoutMillis >= 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return null;
+                }
+                waitMillis = Math.min(waitMillis, remaining);
+            }
+            Outcome outcome = exchange.mOutcomes.poll(waitMillis, TimeUnit.MILLISECONDS);
+            if (outcome != null) {
+                return outcome;
+            }
+        }
+        return CANCELED;
+    }
+
+    private long hedgeDelayMillis(Request request) {
+        LatencyTracker tracker = mLatencies.get(request);
+        if (tracker.size() < MIN_SAMPLES) {
+            return DEFAULT_DELAY_MILLIS;
+        }
+        return Math.max(1, tracker.percentile(0.95));
+    }
+
+    private static class Outcome {
+        final Call mCall;
+        final Response mResponse;
+        final IOException mError;
+
+        Outcome(Call call, Response response, IOException error) {
+            mCall = call;
+            mResponse = response;
+            mError = error;
+        }
+    }
+
+    /**
+     * 收集两个请求的结果，选出结果之后到达的响应直接关闭
+     */
+    private static class Exchange implements Callback {
+        final BlockingQueue<Outcome> mOutcomes = new LinkedBlockingQueue<>();
+        private boolean mSettled;
+
+        synchronized void settle() {
+            mSettled = true;
+            Outcome outcome;
+            while ((outcome = mOutcomes.poll()) != null) {
+                if (outcome.mResponse != null) {
+                    outcome.mResponse.close();
+                }
+            }
+        }
+
+        @Override
+        public synchronized void onFailure(Call call, IOException e) {
+            if (!mSettled) {
+                mOutcomes.add(new Outcome(call, null, e));
+            }
+        }
+
+        @Override
+        public synchronized void onResponse(Call call, Response response) throws IOException {
+            if (mSettled) {
+                response.close();
+                return;
+            }
+            mOutcomes.add(new Outcome(call, response, null));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.android.scaffold.http.interceptor;
+
+import java.util.Arrays;
+
+/**
+ * 记录最近一段时间的请求耗时，用于计算分位数
+ */
+public class LatencyTracker {
+    private static final int DEFAULT_WINDOW = 128;
+
+    private final long[] mSamples;
+    private int mNext;
+    private int mSize;
+
+    public LatencyTracker() {
+        this(DEFAULT_WINDOW);
+    }
+
+    public LatencyTracker(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive!");
+        }
+        mSamples = new long[window];
+    }
+
+    /**
+     * 记录一次请求耗时
+     *
+     * @param latencyMillis 耗时，毫秒
+     */
+    public synchronized void record(long latencyMillis) {
+        mSamples[mNext] = latencyMillis;
+        mNext = (mNext + 1) % mSamples.length;
+        if (mSize < mSamples.length) {
+            mSize++;
+        }
+    }
+
+    /**
+     * 获得样本数
+     *
+     * @return 样本数
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * 计算分位数
+     *
+     * @param percentile 分位，0到1之间，例如0.95
+     * @return 分位耗时，毫秒；没有样本时返回-1
+     */
+    public long percentile(double percentile) {
+        long[] copy;
+        synchronized (this) {
+            if (mSize == 0) {
+                return -1;
+            }
+            copy = Arrays.copyOf(mSamples, mSize);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(percentile * copy.length) - 1;
+        return copy[Math.max(0, Math.min(copy.length - 1, index))];
+    }
+}
@@ -0,0 +1,106 @@
+package com.android.scaffold.http.interceptor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Random;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 幂等请求的重试，退避时间为full jitter指数退避。
+ * GET/HEAD/OPTIONS/PUT/DELETE视为幂等，其他方法带Idempotency-Key头时才重试。
+ * 已取消的请求（例如对冲中落败的一方）不重试
+ */
+public class RetryInterceptor implements Interceptor {
+    public static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private static final Random RANDOM = new Random();
+
+    private final int mMaxAttempts;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+
+    public RetryInterceptor() {
+        this(3, 200, 5000);
+    }
+
+    public RetryInterceptor(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive!");
+        }
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!isIdempotent(request)) {
+            return chain.proceed(request);
+        }
+        Call call = chain.call();
+        for (int attempt = 1; ; attempt++) {
+            boolean last = attempt >= mMaxAttempts;
+            try {
+                Response response = chain.proceed(request);
+                if (last || call.isCanceled() || !isRetryable(response.code())) {
+                    return response;
+                }
+                response.close();
+            } catch (InterruptedIOException e) {
+                //超时之外的中断不重试
+                if (last || call.isCanceled() || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+            } catch (IOException e) {
+                if (last || call.isCanceled()) {
+                    throw e;
+                }
+            }
+            sleep(backoffMillis(attempt));
+            if (call.isCanceled()) {
+                throw new IOException("Canceled");
+            }
+        }
+    }
+
+    /**
+     * full jitter：在[0, min(max, base * 2^(attempt-1))]中随机
+     */
+    long backoffMillis(int attempt) {
+        long ceiling = Math.min(mMaxDelayMillis, mBaseDelayMillis << Math.min(attempt - 1, 20));
+        synchronized (RANDOM) {
+            return (long) (RANDOM.nextDouble() * ceiling);
+        }
+    }
+
+    static boolean isIdempotent(Request request) {
+        switch (request.method()) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "PUT":
+            case "DELETE":
+                return true;
+            default:
+                return request.header(HEADER_IDEMPOTENCY_KEY) != null;
+        }
+    }
+
+    private static boolean isRetryable(int code) {
+        return code == 408 || code == 429 || code == 502 || code == 503 || code == 504;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted during retry backoff");
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.android.scaffold.http.response;
+
+import com.android.scaffold.db.entity.Contact;
+
+/**
+ * 一条联系人变更，op为upsert时contact有值，op为delete时id有值
+ */
+public class ContactChange {
+    public static final String OP_UPSERT = "upsert";
+    public static final String OP_DELETE = "delete";
+
+    public String op;
+    public Long id;
+    public Contact contact;
+}
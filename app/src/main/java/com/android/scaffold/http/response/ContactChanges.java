@@ -0,0 +1,12 @@
+package com.android.scaffold.http.response;
+
+import java.util.List;
+
+/**
+ * 增量同步接口的data，changes按发生顺序排列
+ */
+public class ContactChanges {
+    public List<ContactChange> changes;
+    public String sync_token;
+    public Boolean has_more;
+}
@@ -1,10 +1,15 @@
 package com.android.scaffold.http.service;
 
 import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.http.interceptor.HedgingInterceptor;
+import com.android.scaffold.http.response.ContactChanges;
 import com.android.scaffold.http.response.base.JSONResult;
 
+import okhttp3.ResponseBody;
 import retrofit2.http.GET;
+import retrofit2.http.Headers;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 import rx.Observable;
 
 /**
@@ -12,6 +17,20 @@ import rx.Observable;
  */
 
 public interface PocketMedicalService {
+    @Headers(HedgingInterceptor.HEADER_HEDGE + ": true")
     @GET("v1/user/getContact")
     Observable<JSONResult<Contact>> getContact(@Query("uid") Long uid);
+
+    /**
+     * 联系人列表，data为数组，返回原始响应体交给JSONResultStreamReader逐条读取
+     */
+    @Streaming
+    @GET("v1/user/getContacts")
+    Observable<ResponseBody> getContacts();
+
+    /**
+     * 联系人增量变更，sync_token为空时返回全部联系人
+     */
+    @GET("v1/user/getContactChanges")
+    Observable<JSONResult<ContactChanges>> getContactChanges(@Query("sync_token") String syncToken, @Query("limit") int limit);
 }
@@ -0,0 +1,49 @@
+package com.android.scaffold.repository;
+
+import com.android.scaffold.db.entity.Contact;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 分页读取联系人，方法均为阻塞调用，只能在后台线程执行
+ */
+public interface ContactPageSource {
+    /**
+     * 获得联系人总数
+     *
+     * @return 联系人总数
+     * @throws SQLException SQLException异常
+     */
+    int count() throws SQLException;
+
+    /**
+     * 按id顺序读取afterId之后的一页联系人，走主键索引，耗时与位置无关
+     *
+     * @param afterId 上一页最后一条的id，为null时从头读取
+     * @param limit   最多读取条数
+     * @return 联系人集合
+     * @throws SQLException SQLException异常
+     */
+    List<Contact> loadAfter(Long afterId, int limit) throws SQLException;
+
+    /**
+     * 按id顺序读取beforeId之前的一页联系人，结果仍按id升序
+     *
+     * @param beforeId 下一页第一条的id
+     * @param limit    最多读取条数
+     * @return 联系人集合
+     * @throws SQLException SQLException异常
+     */
+    List<Contact> loadBefore(long beforeId, int limit) throws SQLException;
+
+    /**
+     * 按位置读取一页联系人，需要跳过offset行，只在没有相邻页的id可用时使用
+     *
+     * @param offset 起始位置
+     * @param limit  最多读取条数
+     * @return 联系人集合
+     * @throws SQLException SQLException异常
+     */
+    List<Contact> loadPage(int offset, int limit) throws SQLException;
+}
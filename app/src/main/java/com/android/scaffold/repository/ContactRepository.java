@@ -0,0 +1,196 @@
+package com.android.scaffold.repository;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.db.service.ContactService;
+import com.android.scaffold.db.service.ServiceLocator;
+import com.android.scaffold.http.api.PocketMedicalApi;
+import com.android.scaffold.sync.DaoSyncTarget;
+import com.android.scaffold.sync.DeltaSyncEngine;
+import com.android.scaffold.sync.PreferencesSyncTokenStore;
+import com.android.scaffold.sync.RemoteContactChangeSource;
+import com.android.scaffold.sync.SyncStats;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func1;
+
+/**
+ * 联系人仓库，本地优先：先返回数据库中的数据，过期时再从网络增量同步，
+ * 写回数据库后再推送一次最新数据（stale-while-revalidate）。
+ * ContactService每次使用时从ServiceLocator获取，数据库恢复后自动用上新的实例
+ */
+public class ContactRepository {
+    private static final String TAG = "ContactRepository";
+    /**
+     * 本地数据的有效期，超过后读取时触发后台刷新
+     */
+    static final long MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final String SYNC_ENTITY = "tb_contact";
+
+    private static volatile ContactRepository instance;
+
+    private final Context mContext;
+    private final ContactPageSource mPageSource;
+    private long mLastRevalidated;
+    private Observable<Integer> mInFlight;
+    private int mInFlightGeneration;
+
+    ContactRepository(Context context) {
+        mContext = context.getApplicationContext();
+        mPageSource = new ContactPageSource() {
+            @Override
+            public int count() throws SQLException {
+                return (int) local().count();
+            }
+
+            @Override
+            public List<Contact> loadAfter(Long afterId, int limit) throws SQLException {
+                return local().queryAfter(afterId, limit);
+            }
+
+            @Override
+            public List<Contact> loadBefore(long beforeId, int limit) throws SQLException {
+                return local().queryBefore(beforeId, limit);
+            }
+
+            @Override
+            public List<Contact> loadPage(int offset, int limit) throws SQLException {
+                return local().queryPage(offset, limit);
+            }
+        };
+    }
+
+    public static ContactRepository getInstance(Context context) {
+        ContactRepository repository = instance;
+        if (repository == null) {
+            synchronized (ContactRepository.class) {
+                repository = instance;
+                if (repository == null) {
+                    repository = new ContactRepository(context);
+                    instance = repository;
+                }
+            }
+        }
+        return repository;
+    }
+
+    /**
+     * 获取联系人的分页数据源，先发射本地数据源；本地数据过期时在后台同步，
+     * 同步成功后再发射一次，订阅方据此重新加载可见的页
+     *
+     * @return ContactPageSource的Observable，最多发射两次
+     */
+    public Observable<ContactPageSource> getContacts() {
+        Observable<ContactPageSource> local = Observable.just(mPageSource);
+        if (!isStale()) {
+            return local;
+        }
+        Observable<ContactPageSource> fresh = revalidate()
+                .map(new Func1<Integer, ContactPageSource>() {
+                    @Override
+                    public ContactPageSource call(Integer applied) {
+                        return mPageSource;
+                    }
+                })
+                .onErrorResumeNext(new Func1<Throwable, Observable<ContactPageSource>>() {
+                    @Override
+                    public Observable<ContactPageSource> call(Throwable throwable) {
+                        //本地数据已经展示，刷新失败只记录日志
+                        Log.e(TAG, "revalidate failed", throwable);
+                        return Observable.empty();
+                    }
+                });
+        return Observable.concat(local, fresh);
+    }
+
+    /**
+     * 强制从网络同步，忽略有效期
+     *
+     * @return 应用的变更条数
+     */
+    public Observable<Integer> refresh() {
+        synchronized (this) {
+            mLastRevalidated = 0;
+        }
+        return revalidate();
+    }
+
+    private ContactService local() {
+        return ServiceLocator.getContactService(mContext);
+    }
+
+    /**
+     * 每次同步新建，写入当时ServiceLocator中的ContactService
+     */
+    DeltaSyncEngine<Contact, Long> newSyncEngine() {
+        return new DeltaSyncEngine<>(SYNC_ENTITY,
+                new RemoteContactChangeSource(PocketMedicalApi.getInstance().getService()),
+                new DaoSyncTarget<>(local()),
+                new PreferencesSyncTokenStore(mContext));
+    }
+
+    private synchronized boolean isStale() {
+        return mLastRevalidated == 0 || SystemClock.elapsedRealtime() - mLastRevalidated > MAX_AGE_MILLIS;
+    }
+
+    /**
+     * 同一时间只保留一个网络请求，并发的读取共享它的结果
+     */
+    private synchronized Observable<Integer> revalidate() {
+        if (mInFlight == null) {
+            final int generation = ++mInFlightGeneration;
+            Action0 clear = new Action0() {
+                @Override
+                public void call() {
+                    clearInFlight(generation);
+                }
+            };
+            mInFlight = Observable.fromCallable(new Callable<SyncStats>() {
+                        @Override
+                        public SyncStats call() throws Exception {
+                            return newSyncEngine().sync();
+                        }
+                    })
+                    .map(new Func1<SyncStats, Integer>() {
+                        @Override
+                        public Integer call(SyncStats stats) {
+                            Log.d(TAG, "contact sync " + stats);
+                            return stats.getApplied();
+                        }
+                    })
+                    .doOnNext(new Action1<Integer>() {
+                        @Override
+                        public void call(Integer written) {
+                            synchronized (ContactRepository.this) {
+                                mLastRevalidated = SystemClock.elapsedRealtime();
+                            }
+                        }
+                    })
+                    .doOnTerminate(clear)
+                    //所有订阅方都取消时share()会退订上游，此时也要清掉，否则之后的读取都拿到不会再发射的同步
+                    .doOnUnsubscribe(clear)
+                    .share();
+        }
+        return mInFlight;
+    }
+
+    /**
+     * 只清掉自己那一次同步，不影响之后新建的同步
+     */
+    private synchronized void clearInFlight(int generation) {
+        if (mInFlightGeneration == generation) {
+            mInFlight = null;
+        }
+    }
+}
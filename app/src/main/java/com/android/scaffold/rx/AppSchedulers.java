@@ -0,0 +1,46 @@
+package com.android.scaffold.rx;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * 应用统一使用的Scheduler
+ */
+public final class AppSchedulers {
+    private static final Scheduler MAIN_THREAD = Schedulers.from(new MainThreadExecutor());
+
+    private AppSchedulers() {
+    }
+
+    /**
+     * 数据库、网络等阻塞操作
+     *
+     * @return io Scheduler
+     */
+    public static Scheduler io() {
+        return Schedulers.io();
+    }
+
+    /**
+     * 主线程，用于更新界面
+     *
+     * @return 主线程Scheduler
+     */
+    public static Scheduler mainThread() {
+        return MAIN_THREAD;
+    }
+
+    private static class MainThreadExecutor implements Executor {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            mHandler.post(command);
+        }
+    }
+}
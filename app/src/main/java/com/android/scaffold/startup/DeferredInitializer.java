@@ -0,0 +1,86 @@
+package com.android.scaffold.startup;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 非关键初始化延迟到主线程第一次空闲之后，在后台线程依次执行，
+ * 避免占用冷启动到首帧的时间。
+ * 被延迟的单例仍然是懒加载的，提前用到时直接初始化即可
+ */
+public final class DeferredInitializer {
+    private static final String TAG = "DeferredInitializer";
+
+    private static final List<Task> sPending = new ArrayList<>();
+    private static boolean sScheduled;
+    private static ExecutorService sExecutor;
+
+    private DeferredInitializer() {
+    }
+
+    /**
+     * 登记一个延迟初始化任务，必须在主线程调用
+     *
+     * @param name     任务名，同时作为StartupTracer的阶段名
+     * @param runnable 初始化逻辑
+     */
+    public static void add(String name, Runnable runnable) {
+        sPending.add(new Task(name, runnable));
+        if (!sScheduled) {
+            sScheduled = true;
+            Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                @Override
+                public boolean queueIdle() {
+                    runPending();
+                    return false;
+                }
+            });
+        }
+    }
+
+    /**
+     * 立即提交所有登记的任务，不再等待主线程空闲，供测试使用
+     */
+    public static void runPending() {
+        List<Task> tasks = new ArrayList<>(sPending);
+        sPending.clear();
+        sScheduled = false;
+        if (tasks.isEmpty()) {
+            return;
+        }
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor();
+        }
+        for (final Task task : tasks) {
+            sExecutor.execute(task);
+        }
+    }
+
+    private static class Task implements Runnable {
+        private final String mName;
+        private final Runnable mRunnable;
+
+        Task(String name, Runnable runnable) {
+            mName = name;
+            mRunnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            StartupTracer.begin(mName);
+            try {
+                mRunnable.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, mName + " failed", e);
+            } finally {
+                StartupTracer.end(mName);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.android.scaffold.startup;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动阶段计时：每个阶段同时写入systrace的section（API 18以上），
+ * 并记录耗时供日志和启动基准测试读取。
+ * begin/end必须在同一线程成对调用
+ */
+public final class StartupTracer {
+    private static final String TAG = "StartupTracer";
+
+    private static final Map<String, Long> sStarts = new HashMap<>();
+    private static final Map<String, Long> sPhases = new LinkedHashMap<>();
+
+    private StartupTracer() {
+    }
+
+    public static void begin(String phase) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            //section名最长127个字符
+            Trace.beginSection(phase.length() > 127 ? phase.substring(0, 127) : phase);
+        }
+        synchronized (StartupTracer.class) {
+            sStarts.put(phase, System.nanoTime());
+        }
+    }
+
+    public static void end(String phase) {
+        long now = System.nanoTime();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+        synchronized (StartupTracer.class) {
+            Long start = sStarts.remove(phase);
+            if (start != null) {
+                sPhases.put(phase, now - start);
+            }
+        }
+    }
+
+    /**
+     * 开始一个跨线程或跨回调的阶段，只计时，不写入systrace
+     */
+    public static synchronized void mark(String phase) {
+        sStarts.put(phase, System.nanoTime());
+    }
+
+    /**
+     * 结束mark开始的阶段
+     *
+     * @return 阶段已mark且本次结束时返回true，重复调用返回false
+     */
+    public static synchronized boolean markEnd(String phase) {
+        Long start = sStarts.remove(phase);
+        if (start == null) {
+            return false;
+        }
+        sPhases.put(phase, System.nanoTime() - start);
+        return true;
+    }
+
+    /**
+     * 获得已结束阶段的耗时
+     *
+     * @return 阶段名到耗时（纳秒）的映射，按结束顺序排列
+     */
+    public static synchronized Map<String, Long> getPhases() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(sPhases));
+    }
+
+    public static synchronized void reset() {
+        sStarts.clear();
+        sPhases.clear();
+    }
+
+    public static synchronized void dump() {
+        for (Map.Entry<String, Long> entry : sPhases.entrySet()) {
+            Log.i(TAG, entry.getKey() + ": " + TimeUnit.NANOSECONDS.toMicros(entry.getValue()) + "us");
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.android.scaffold.sync;
+
+/**
+ * 一条变更，新增/修改或删除，按服务端给出的顺序应用
+ * T 实体类
+ * ID id类型
+ */
+public class Change<T, ID> {
+    private final T mEntity;
+    private final ID mId;
+
+    private Change(T entity, ID id) {
+        mEntity = entity;
+        mId = id;
+    }
+
+    public static <T, ID> Change<T, ID> upsert(T entity) {
+        if (entity == null) {
+            throw new IllegalArgumentException("entity can't be null!");
+        }
+        return new Change<T, ID>(entity, null);
+    }
+
+    public static <T, ID> Change<T, ID> delete(ID id) {
+        if (id == null) {
+            throw new IllegalArgumentException("id can't be null!");
+        }
+        return new Change<T, ID>(null, id);
+    }
+
+    public boolean isDelete() {
+        return mEntity == null;
+    }
+
+    /**
+     * 新增或修改的实体，删除时为null
+     */
+    public T getEntity() {
+        return mEntity;
+    }
+
+    /**
+     * 删除的id，新增或修改时为null
+     */
+    public ID getId() {
+        return mId;
+    }
+}
@@ -0,0 +1,42 @@
+package com.android.scaffold.sync;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 服务端返回的一页增量变更
+ * T 实体类
+ * ID id类型
+ */
+public class ChangePage<T, ID> {
+    private final List<Change<T, ID>> mChanges;
+    private final String mNextToken;
+    private final boolean mHasMore;
+
+    public ChangePage(List<Change<T, ID>> changes, String nextToken, boolean hasMore) {
+        mChanges = changes == null ? Collections.<Change<T, ID>>emptyList() : changes;
+        mNextToken = nextToken;
+        mHasMore = hasMore;
+    }
+
+    /**
+     * 按发生顺序排列的变更，同一id先删后建时必须按顺序应用
+     */
+    public List<Change<T, ID>> getChanges() {
+        return mChanges;
+    }
+
+    /**
+     * 应用完本页后保存的token，下次从这里继续
+     */
+    public String getNextToken() {
+        return mNextToken;
+    }
+
+    /**
+     * 服务端是否还有后续变更
+     */
+    public boolean hasMore() {
+        return mHasMore;
+    }
+}
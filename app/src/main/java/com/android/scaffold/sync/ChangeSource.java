@@ -0,0 +1,20 @@
+package com.android.scaffold.sync;
+
+import java.io.IOException;
+
+/**
+ * 增量变更来源，通常是服务端接口
+ * T 实体类
+ * ID id类型
+ */
+public interface ChangeSource<T, ID> {
+    /**
+     * 获取token之后的变更
+     *
+     * @param token 上次同步保存的token，首次同步为null
+     * @param limit 单页最多返回的变更数
+     * @return 一页变更
+     * @throws IOException 网络异常
+     */
+    ChangePage<T, ID> fetchChanges(String token, int limit) throws IOException;
+}
@@ -0,0 +1,46 @@
+package com.android.scaffold.sync;
+
+import com.android.scaffold.db.dao.base.BaseDao;
+import com.j256.ormlite.dao.Dao;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * 通过BaseDao写入变更的SyncTarget，实体的id必须允许写入服务端给出的值。
+ * 删除同时作用于热库和冷库，否则已归档的行会在包含冷库的查询中重新出现
+ * T 实体类
+ * ID id类型
+ */
+public class DaoSyncTarget<T, ID> implements SyncTarget<T, ID> {
+    private final BaseDao<T, ID> mBaseDao;
+
+    public DaoSyncTarget(BaseDao<T, ID> baseDao) {
+        mBaseDao = baseDao;
+    }
+
+    @Override
+    public void applyChunk(final List<Change<T, ID>> changes) throws SQLException {
+        final Dao<T, ID> dao = mBaseDao.getDao();
+        //ATTACH不能在事务中执行
+        mBaseDao.attachArchiveIfExists();
+        mBaseDao.callInTransaction(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                for (Change<T, ID> change : changes) {
+                    if (change.isDelete()) {
+                        dao.deleteById(change.getId());
+                        mBaseDao.deleteArchivedIds(Collections.singletonList(change.getId()));
+                    } else {
+                        mBaseDao.touch(change.getEntity());
+                        dao.createOrUpdate(change.getEntity());
+                    }
+                }
+                return null;
+            }
+        });
+        mBaseDao.recordWrites(changes.size());
+    }
+}
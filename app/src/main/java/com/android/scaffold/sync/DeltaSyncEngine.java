@@ -0,0 +1,95 @@
+package com.android.scaffold.sync;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 增量同步：只拉取保存的token之后的变更，分块在事务中写入，
+ * 每页写入成功后才保存新token，中断后重新调用sync()会从上次提交的位置继续。
+ * 同一页重复应用是幂等的（createOrUpdate、按id删除）。
+ * T 实体类
+ * ID id类型
+ */
+public class DeltaSyncEngine<T, ID> {
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    public static final int DEFAULT_CHUNK_SIZE = 200;
+
+    private final String mEntity;
+    private final ChangeSource<T, ID> mSource;
+    private final SyncTarget<T, ID> mTarget;
+    private final SyncTokenStore mTokenStore;
+    private final int mPageSize;
+    private final int mChunkSize;
+
+    public DeltaSyncEngine(String entity, ChangeSource<T, ID> source, SyncTarget<T, ID> target, SyncTokenStore tokenStore) {
+        this(entity, source, target, tokenStore, DEFAULT_PAGE_SIZE, DEFAULT_CHUNK_SIZE);
+    }
+
+    public DeltaSyncEngine(String entity, ChangeSource<T, ID> source, SyncTarget<T, ID> target, SyncTokenStore tokenStore,
+                           int pageSize, int chunkSize) {
+        if (pageSize <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("pageSize and chunkSize must be positive!");
+        }
+        mEntity = entity;
+        mSource = source;
+        mTarget = target;
+        mTokenStore = tokenStore;
+        mPageSize = pageSize;
+        mChunkSize = chunkSize;
+    }
+
+    /**
+     * 同步到服务端最新状态，阻塞执行，不要在主线程调用
+     *
+     * @return 本次同步的统计
+     * @throws IOException  网络异常或线程被中断
+     * @throws SQLException SQLException异常
+     */
+    public synchronized SyncStats sync() throws IOException, SQLException {
+        SyncStats stats = new SyncStats();
+        long start = System.nanoTime();
+        try {
+            String token = mTokenStore.getToken(mEntity);
+            boolean hasMore = true;
+            while (hasMore) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("sync of " + mEntity + " interrupted");
+                }
+                ChangePage<T, ID> page = mSource.fetchChanges(token, mPageSize);
+                String nextToken = page.getNextToken();
+                if (page.hasMore() && (nextToken == null || nextToken.equals(token))) {
+                    //token不前进时再次请求只会拿到同一页，直接失败而不是死循环
+                    throw new IOException("sync of " + mEntity + " did not advance past token " + token);
+                }
+                applyPage(page, stats);
+                if (nextToken != null) {
+                    token = nextToken;
+                    mTokenStore.putToken(mEntity, token);
+                }
+                stats.onPageApplied();
+                hasMore = page.hasMore();
+            }
+        } finally {
+            stats.setElapsedNanos(System.nanoTime() - start);
+        }
+        return stats;
+    }
+
+    private void applyPage(ChangePage<T, ID> page, SyncStats stats) throws SQLException {
+        List<Change<T, ID>> changes = page.getChanges();
+        //按原顺序分块，同一id先删后建、先建后删都以最后一条为准
+        for (int from = 0; from < changes.size(); from += mChunkSize) {
+            List<Change<T, ID>> chunk = changes.subList(from, Math.min(from + mChunkSize, changes.size()));
+            mTarget.applyChunk(chunk);
+            int deletes = 0;
+            for (Change<T, ID> change : chunk) {
+                if (change.isDelete()) {
+                    deletes++;
+                }
+            }
+            stats.onChunkApplied(chunk.size() - deletes, deletes);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.android.scaffold.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * 基于SharedPreferences的SyncTokenStore
+ */
+public class PreferencesSyncTokenStore implements SyncTokenStore {
+    private static final String PREFS_NAME = "sync_tokens";
+
+    private final SharedPreferences mPreferences;
+
+    public PreferencesSyncTokenStore(Context context) {
+        mPreferences = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @Override
+    public String getToken(String entity) {
+        return mPreferences.getString(entity, null);
+    }
+
+    @Override
+    public void putToken(String entity, String token) {
+        //同步执行，保证token与数据库事务的先后顺序
+        mPreferences.edit().putString(entity, token).commit();
+    }
+}
@@ -0,0 +1,56 @@
+package com.android.scaffold.sync;
+
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.http.response.ContactChange;
+import com.android.scaffold.http.response.ContactChanges;
+import com.android.scaffold.http.response.base.JSONResult;
+import com.android.scaffold.http.service.PocketMedicalService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 通过PocketMedicalService拉取联系人增量变更
+ */
+public class RemoteContactChangeSource implements ChangeSource<Contact, Long> {
+    private final PocketMedicalService mService;
+
+    public RemoteContactChangeSource(PocketMedicalService service) {
+        mService = service;
+    }
+
+    @Override
+    public ChangePage<Contact, Long> fetchChanges(String token, int limit) throws IOException {
+        JSONResult<ContactChanges> result;
+        try {
+            result = mService.getContactChanges(token, limit).toBlocking().single();
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        if (result == null || (result.errorcode != null && result.errorcode != 0)) {
+            throw new IOException("getContactChanges failed: " + (result == null ? null : result.errormsg));
+        }
+        ContactChanges data = result.data;
+        if (data == null) {
+            return new ChangePage<Contact, Long>(null, token, false);
+        }
+        List<Change<Contact, Long>> changes = new ArrayList<>(data.changes == null ? 0 : data.changes.size());
+        if (data.changes != null) {
+            for (ContactChange change : data.changes) {
+                if (ContactChange.OP_DELETE.equals(change.op) && change.id != null) {
+                    changes.add(Change.<Contact, Long>delete(change.id));
+                } else if (ContactChange.OP_UPSERT.equals(change.op) && change.contact != null) {
+                    changes.add(Change.<Contact, Long>upsert(change.contact));
+                } else {
+                    //跳过会打乱顺序，无法识别的变更让本次同步失败
+                    throw new IOException("unsupported contact change: op=" + change.op);
+                }
+            }
+        }
+        return new ChangePage<>(changes, data.sync_token, data.has_more != null && data.has_more);
+    }
+}
@@ -0,0 +1,68 @@
+package com.android.scaffold.sync;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次同步的统计
+ */
+public class SyncStats {
+    private int mPages;
+    private int mUpserts;
+    private int mDeletes;
+    private long mElapsedNanos;
+
+    void onChunkApplied(int upserts, int deletes) {
+        mUpserts += upserts;
+        mDeletes += deletes;
+    }
+
+    void onPageApplied() {
+        mPages++;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        mElapsedNanos = elapsedNanos;
+    }
+
+    public int getPages() {
+        return mPages;
+    }
+
+    public int getUpserts() {
+        return mUpserts;
+    }
+
+    public int getDeletes() {
+        return mDeletes;
+    }
+
+    public int getApplied() {
+        return mUpserts + mDeletes;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(mElapsedNanos);
+    }
+
+    /**
+     * 同步吞吐量
+     *
+     * @return 每秒应用的变更数
+     */
+    public double getChangesPerSecond() {
+        if (mElapsedNanos <= 0) {
+            return 0;
+        }
+        return getApplied() * (double) TimeUnit.SECONDS.toNanos(1) / mElapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncStats{pages=" + mPages
+                + ", upserts=" + mUpserts
+                + ", deletes=" + mDeletes
+                + ", elapsedMillis=" + getElapsedMillis()
+                + ", changesPerSecond=" + String.format("%.1f", getChangesPerSecond())
+                + "}";
+    }
+}
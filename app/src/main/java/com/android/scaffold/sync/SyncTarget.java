@@ -0,0 +1,19 @@
+package com.android.scaffold.sync;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 变更的写入目标，一次调用必须在一个事务中完成
+ * T 实体类
+ * ID id类型
+ */
+public interface SyncTarget<T, ID> {
+    /**
+     * 在一个事务中按顺序应用一批变更
+     *
+     * @param changes 按发生顺序排列的变更
+     * @throws SQLException SQLException异常
+     */
+    void applyChunk(List<Change<T, ID>> changes) throws SQLException;
+}
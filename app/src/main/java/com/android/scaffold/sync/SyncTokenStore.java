@@ -0,0 +1,10 @@
+package com.android.scaffold.sync;
+
+/**
+ * 按实体保存同步token
+ */
+public interface SyncTokenStore {
+    String getToken(String entity);
+
+    void putToken(String entity, String token);
+}
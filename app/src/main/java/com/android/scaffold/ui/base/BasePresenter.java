@@ -0,0 +1,120 @@
+package com.android.scaffold.ui.base;
+
+import android.util.Log;
+
+import com.android.scaffold.rx.AppSchedulers;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Presenter基类：Model的工作在io线程执行，结果在主线程交给View，
+ * View解绑时取消全部请求，同一key的新请求会取消旧请求。
+ * 结果回调在主线程的耗时超过一帧时记录警告
+ * V View类型
+ */
+public abstract class BasePresenter<V> implements IBasePresenter<V> {
+    private static final String TAG = "BasePresenter";
+    /**
+     * 一帧的时间预算，60fps
+     */
+    private static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    protected V mView;
+    private CompositeSubscription mSubscriptions = new CompositeSubscription();
+    private final Map<String, Subscription> mKeyedSubscriptions = new HashMap<>();
+
+    @Override
+    public void attachView(V view) {
+        mView = view;
+        if (mSubscriptions.isUnsubscribed()) {
+            mSubscriptions = new CompositeSubscription();
+        }
+    }
+
+    @Override
+    public void detachView() {
+        mSubscriptions.unsubscribe();
+        mKeyedSubscriptions.clear();
+        mView = null;
+    }
+
+    protected boolean isViewAttached() {
+        return mView != null;
+    }
+
+    /**
+     * 在io线程订阅source，在主线程回调；必须在主线程调用
+     *
+     * @param key     请求标识，同一key的旧请求会被取消
+     * @param source  Model提供的Observable
+     * @param onNext  结果回调，View已解绑时不会回调
+     * @param onError 错误回调，View已解绑时不会回调
+     */
+    protected <T> void execute(final String key, Observable<T> source, final Action1<T> onNext, final Action1<Throwable> onError) {
+        Subscription previous = mKeyedSubscriptions.remove(key);
+        if (previous != null) {
+            previous.unsubscribe();
+            mSubscriptions.remove(previous);
+        }
+        final Subscription[] holder = new Subscription[1];
+        Subscription subscription = source
+                .subscribeOn(AppSchedulers.io())
+                .observeOn(AppSchedulers.mainThread())
+                .doOnUnsubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        //完成或被取消后释放引用
+                        if (holder[0] != null) {
+                            if (mKeyedSubscriptions.get(key) == holder[0]) {
+                                mKeyedSubscriptions.remove(key);
+                            }
+                            mSubscriptions.remove(holder[0]);
+                        }
+                    }
+                })
+                .subscribe(new Action1<T>() {
+                    @Override
+                    public void call(T t) {
+                        if (!isViewAttached()) {
+                            return;
+                        }
+                        long start = System.nanoTime();
+                        onNext.call(t);
+                        logMainThreadTime(key, System.nanoTime() - start);
+                    }
+                }, new Action1<Throwable>() {
+                    @Override
+                    public void call(Throwable throwable) {
+                        if (isViewAttached()) {
+                            onError.call(throwable);
+                        } else {
+                            Log.w(TAG, key + " failed after view detached", throwable);
+                        }
+                    }
+                });
+        if (subscription.isUnsubscribed()) {
+            return;
+        }
+        holder[0] = subscription;
+        mKeyedSubscriptions.put(key, subscription);
+        mSubscriptions.add(subscription);
+    }
+
+    private static void logMainThreadTime(String key, long elapsedNanos) {
+        long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        if (elapsedNanos > FRAME_BUDGET_NANOS) {
+            Log.w(TAG, key + " took " + elapsedMicros + "us on main thread, over frame budget "
+                    + TimeUnit.NANOSECONDS.toMicros(FRAME_BUDGET_NANOS) + "us");
+        } else {
+            Log.d(TAG, key + " took " + elapsedMicros + "us on main thread");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.android.scaffold.ui.base;
+
+/**
+ * Presenter与View生命周期的绑定
+ * V View类型
+ */
+public interface IBasePresenter<V> {
+    void attachView(V view);
+
+    /**
+     * 解绑View，同时取消所有未完成的请求
+     */
+    void detachView();
+}
@@ -1,18 +1,40 @@
 package com.android.scaffold.ui.main.activity;
 
-import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 
+import com.android.scaffold.BuildConfig;
+import com.android.scaffold.MyApplication;
 import com.android.scaffold.R;
-import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.repository.ContactPageSource;
+import com.android.scaffold.startup.StartupTracer;
+import com.android.scaffold.ui.main.adapter.ContactAdapter;
 import com.android.scaffold.ui.main.contract.ContactMainContract;
 import com.android.scaffold.ui.main.presenter.ContactMainPresenter;
 import com.wgl.android.library.base.BaseActivity;
 
-import java.util.List;
-
 public class MainActivity extends BaseActivity implements ContactMainContract.View {
+    public static final String PHASE_ON_CREATE = "MainActivity.onCreate";
+    public static final String PHASE_INIT_VIEW = "MainActivity.initView";
     private ContactMainContract.Presenter mPresenter;
+    private ContactAdapter mAdapter;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        StartupTracer.begin(PHASE_ON_CREATE);
+        super.onCreate(savedInstanceState);
+        StartupTracer.end(PHASE_ON_CREATE);
+        //首帧绘制后的第一个消息，冷启动结束；只有进程内第一次创建时markEnd返回true，重建Activity不再输出
+        getWindow().getDecorView().post(new Runnable() {
+            @Override
+            public void run() {
+                if (StartupTracer.markEnd(MyApplication.PHASE_COLD_START) && BuildConfig.DEBUG) {
+                    StartupTracer.dump();
+                }
+            }
+        });
+    }
 
     @Override
     public int getLayoutId() {
@@ -21,18 +43,32 @@ public class MainActivity extends BaseActivity implements ContactMainContract.Vi
 
     @Override
     protected void initView() {
-
+        StartupTracer.begin(PHASE_INIT_VIEW);
+        RecyclerView contactList = (RecyclerView) findViewById(R.id.rv_contacts);
+        contactList.setLayoutManager(new LinearLayoutManager(this));
+        contactList.setHasFixedSize(true);
+        mAdapter = new ContactAdapter();
+        contactList.setAdapter(mAdapter);
+        mPresenter = new ContactMainPresenter(this);
+        mPresenter.attachView(this);
+        StartupTracer.end(PHASE_INIT_VIEW);
     }
 
     @Override
     protected void onStart() {
         super.onStart();
-        //mPresenter.loadContacts();
-        showNetErrorTip("wuganlin");
+        mPresenter.loadContacts();
     }
 
     @Override
-    public void showContacts(List<Contact> contacts) {
+    protected void onDestroy() {
+        mPresenter.detachView();
+        mAdapter.release();
+        super.onDestroy();
+    }
 
+    @Override
+    public void showContacts(ContactPageSource contacts) {
+        mAdapter.submit(contacts);
     }
 }
@@ -0,0 +1,83 @@
+package com.android.scaffold.ui.main.adapter;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.android.scaffold.R;
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.repository.ContactPageSource;
+
+/**
+ * 联系人列表Adapter，数据来自PagedContactList，未加载的行显示占位
+ */
+public class ContactAdapter extends RecyclerView.Adapter<ContactAdapter.ViewHolder> implements PagedContactList.Callback {
+    private final PagedContactList mContacts = new PagedContactList(this);
+
+    /**
+     * 提交数据源，数据源内容变化后再次提交即可刷新
+     *
+     * @param source 联系人数据源
+     */
+    public void submit(ContactPageSource source) {
+        mContacts.submit(source);
+    }
+
+    /**
+     * 释放分页数据，Activity销毁时调用
+     */
+    public void release() {
+        mContacts.release();
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_contact, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        Contact contact = mContacts.get(position);
+        if (contact == null) {
+            holder.mName.setText(R.string.contact_placeholder);
+            holder.mAge.setText(null);
+        } else {
+            holder.mName.setText(contact.getName());
+            holder.mAge.setText(contact.getAge() == null ? null : String.valueOf(contact.getAge()));
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return mContacts.size();
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+        notifyItemRangeInserted(position, count);
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        notifyItemRangeRemoved(position, count);
+    }
+
+    @Override
+    public void onChanged(int position, int count) {
+        notifyItemRangeChanged(position, count);
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView mName;
+        final TextView mAge;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            mName = (TextView) itemView.findViewById(R.id.tv_name);
+            mAge = (TextView) itemView.findViewById(R.id.tv_age);
+        }
+    }
+}
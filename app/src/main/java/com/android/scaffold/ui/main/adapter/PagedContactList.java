@@ -0,0 +1,315 @@
+package com.android.scaffold.ui.main.adapter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.repository.ContactPageSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 按页从ContactPageSource加载的联系人列表：
+ * 未加载的位置返回null作为占位，访问接近页边缘时预取相邻页，
+ * 最多缓存MAX_PAGES页，页的加载和新旧数据的比较都在共用的后台线程完成。
+ * 相邻页已加载时按id续读（keyset），只有跳转或数据刷新后才按位置读取。
+ * 快速滑动时排队的加载在后台线程开始前检查，已经离开当前位置附近的页直接跳过。
+ * 除构造外所有方法都必须在主线程调用，不再使用时调用release
+ */
+public class PagedContactList {
+    private static final String TAG = "PagedContactList";
+    public static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
+    private static final int MAX_PAGES = 8;
+    /**
+     * 与最近访问的页相距超过这个页数的加载在开始前丢弃
+     */
+    private static final int LOAD_WINDOW_PAGES = 2;
+
+    /**
+     * 数据变化回调，在主线程执行
+     */
+    public interface Callback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onChanged(int position, int count);
+    }
+
+    /**
+     * 所有列表共用一个后台线程，Activity重建不会新增线程
+     */
+    private static final Executor BACKGROUND = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "contact-pages");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Callback mCallback;
+    private final Map<Integer, List<Contact>> mPages = new LinkedHashMap<Integer, List<Contact>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Contact>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private final Set<Integer> mLoading = new HashSet<>();
+    /**
+     * 本代数据中已加载页的首尾id，用于相邻页的keyset查询
+     */
+    private final Map<Integer, Long> mFirstIds = new HashMap<>();
+    private final Map<Integer, Long> mLastIds = new HashMap<>();
+    private ContactPageSource mSource;
+    /**
+     * 主线程写，后台线程在加载前读取
+     */
+    private volatile int mGeneration;
+    private volatile int mRequestedPage;
+    private int mCount;
+
+    public PagedContactList(Callback callback) {
+        mCallback = callback;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * 获取联系人，同时触发当前页和相邻页的加载
+     *
+     * @param position 位置
+     * @return 联系人，未加载时返回null
+     */
+    public Contact get(int position) {
+        int page = position / PAGE_SIZE;
+        int index = position % PAGE_SIZE;
+        mRequestedPage = page;
+        List<Contact> contacts = mPages.get(page);
+        loadPage(page, null);
+        if (index >= PAGE_SIZE - PREFETCH_DISTANCE && (page + 1) * PAGE_SIZE < mCount) {
+            loadPage(page + 1, null);
+        } else if (index < PREFETCH_DISTANCE && page > 0) {
+            loadPage(page - 1, null);
+        }
+        if (contacts == null || index >= contacts.size()) {
+            return null;
+        }
+        return contacts.get(index);
+    }
+
+    /**
+     * 切换数据源或数据源内容已变化，重新读取总数和已缓存的页，
+     * 已展示的数据在新数据就绪前保持不变
+     *
+     * @param source 数据源
+     */
+    public void submit(final ContactPageSource source) {
+        final int generation = ++mGeneration;
+        mSource = source;
+        mLoading.clear();
+        mFirstIds.clear();
+        mLastIds.clear();
+        final Map<Integer, List<Contact>> displayed = new LinkedHashMap<>(mPages);
+        BACKGROUND.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int count;
+                try {
+                    count = source.count();
+                } catch (Exception e) {
+                    Log.e(TAG, "count failed", e);
+                    return;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        applyCount(count);
+                        for (Map.Entry<Integer, List<Contact>> entry : displayed.entrySet()) {
+                            if (entry.getKey() * PAGE_SIZE < count) {
+                                loadPage(entry.getKey(), entry.getValue());
+                            }
+                        }
+                        if (displayed.isEmpty() && count > 0) {
+                            loadPage(0, null);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 释放列表，丢弃缓存和尚未送达的加载结果，在Activity销毁时调用
+     */
+    public void release() {
+        mGeneration++;
+        mSource = null;
+        mLoading.clear();
+        mPages.clear();
+        mFirstIds.clear();
+        mLastIds.clear();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    private void applyCount(int count) {
+        int oldCount = mCount;
+        mCount = count;
+        if (count > oldCount) {
+            mCallback.onInserted(oldCount, count - oldCount);
+        } else if (count < oldCount) {
+            mCallback.onRemoved(count, oldCount - count);
+            //超出范围的页已经无效
+            int lastPage = count == 0 ? -1 : (count - 1) / PAGE_SIZE;
+            for (Integer page : new ArrayList<>(mPages.keySet())) {
+                if (page > lastPage) {
+                    mPages.remove(page);
+                }
+            }
+        }
+    }
+
+    /**
+     * 加载一页，reload为该页当前展示的数据，为null时仅在未缓存时加载
+     */
+    private void loadPage(final int page, final List<Contact> reload) {
+        if (mSource == null || mLoading.contains(page) || (reload == null && mPages.containsKey(page))) {
+            return;
+        }
+        mLoading.add(page);
+        final int generation = mGeneration;
+        final ContactPageSource source = mSource;
+        final List<Contact> displayed = reload == null ? Collections.<Contact>emptyList() : reload;
+        final Long afterId = page == 0 ? null : mLastIds.get(page - 1);
+        final Long beforeId = mFirstIds.get(page + 1);
+        BACKGROUND.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration || !isInWindow(page)) {
+                    postSkipped(generation, page);
+                    return;
+                }
+                List<Contact> contacts;
+                try {
+                    if (page == 0 || afterId != null) {
+                        contacts = source.loadAfter(afterId, PAGE_SIZE);
+                    } else if (beforeId != null) {
+                        //后一页存在时本页一定是满页
+                        contacts = source.loadBefore(beforeId, PAGE_SIZE);
+                    } else {
+                        contacts = source.loadPage(page * PAGE_SIZE, PAGE_SIZE);
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "load page " + page + " failed", e);
+                    contacts = null;
+                }
+                postLoaded(generation, page, contacts, contacts == null ? null : diff(displayed, contacts));
+            }
+        });
+    }
+
+    private boolean isInWindow(int page) {
+        return Math.abs(page - mRequestedPage) <= LOAD_WINDOW_PAGES;
+    }
+
+    private void postSkipped(final int generation, final int page) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
+                }
+                mLoading.remove(page);
+                //跳过的可能是刷新，缓存里是上一代的数据，丢掉后回到这一页时重新加载
+                mPages.remove(page);
+                //跳过之后又滑了回来，get()当时看到正在加载而没有再次请求
+                if (isInWindow(page)) {
+                    loadPage(page, null);
+                }
+            }
+        });
+    }
+
+    private void postLoaded(final int generation, final int page, final List<Contact> contacts, final int[] changedRanges) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
+                }
+                mLoading.remove(page);
+                if (contacts == null) {
+                    return;
+                }
+                mPages.put(page, contacts);
+                if (!contacts.isEmpty()) {
+                    mFirstIds.put(page, contacts.get(0).getId());
+                    mLastIds.put(page, contacts.get(contacts.size() - 1).getId());
+                }
+                int start = page * PAGE_SIZE;
+                for (int i = 0; i < changedRanges.length; i += 2) {
+                    int position = start + changedRanges[i];
+                    int count = Math.min(changedRanges[i + 1], mCount - position);
+                    if (count > 0) {
+                        mCallback.onChanged(position, count);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 逐位置比较同一页的新旧数据，返回变化区间[起始, 长度, 起始, 长度...]，
+     * 页内位置不变，因此不会产生插入或删除
+     */
+    static int[] diff(List<Contact> oldContacts, List<Contact> newContacts) {
+        int size = Math.max(oldContacts.size(), newContacts.size());
+        int[] ranges = new int[size + 1];
+        int length = 0;
+        int rangeStart = -1;
+        for (int i = 0; i <= size; i++) {
+            boolean changed = i < size && !sameContents(
+                    i < oldContacts.size() ? oldContacts.get(i) : null,
+                    i < newContacts.size() ? newContacts.get(i) : null);
+            if (changed && rangeStart < 0) {
+                rangeStart = i;
+            } else if (!changed && rangeStart >= 0) {
+                ranges[length++] = rangeStart;
+                ranges[length++] = i - rangeStart;
+                rangeStart = -1;
+            }
+        }
+        int[] result = new int[length];
+        System.arraycopy(ranges, 0, result, 0, length);
+        return result;
+    }
+
+    private static boolean sameContents(Contact a, Contact b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return equal(a.getId(), b.getId()) && equal(a.getName(), b.getName()) && equal(a.getAge(), b.getAge());
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
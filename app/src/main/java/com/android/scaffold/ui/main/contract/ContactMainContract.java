@@ -1,8 +1,7 @@
 package com.android.scaffold.ui.main.contract;
 
-import com.android.scaffold.db.entity.Contact;
-
-import java.util.List;
+import com.android.scaffold.repository.ContactPageSource;
+import com.android.scaffold.ui.base.IBasePresenter;
 
 import rx.Observable;
 
@@ -12,14 +11,17 @@ import rx.Observable;
 
 public interface ContactMainContract {
     interface Model {
-        List<Contact> getContacts();
+        /**
+         * 先发射本地联系人数据源，后台同步成功后再发射一次
+         */
+        Observable<ContactPageSource> getContacts();
     }
 
     interface View {
-        void showContacts(List<Contact> contacts);
+        void showContacts(ContactPageSource contacts);
     }
 
-    interface Presenter {
+    interface Presenter extends IBasePresenter<View> {
         void loadContacts();
     }
 }
@@ -1,17 +1,26 @@
 package com.android.scaffold.ui.main.model;
 
-import com.android.scaffold.db.entity.Contact;
+import android.content.Context;
+
+import com.android.scaffold.repository.ContactPageSource;
+import com.android.scaffold.repository.ContactRepository;
 import com.android.scaffold.ui.main.contract.ContactMainContract;
 
-import java.util.List;
+import rx.Observable;
 
 /**
  * Created by wuganlin on 2017/3/31.
  */
 
 public class ContactMainModel implements ContactMainContract.Model {
+    private ContactRepository mRepository;
+
+    public ContactMainModel(Context context) {
+        mRepository = ContactRepository.getInstance(context);
+    }
+
     @Override
-    public List<Contact> getContacts() {
-        return null;
+    public Observable<ContactPageSource> getContacts() {
+        return mRepository.getContacts();
     }
 }
@@ -1,32 +1,43 @@
 package com.android.scaffold.ui.main.presenter;
 
 import android.content.Context;
+import android.util.Log;
 
-import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.repository.ContactPageSource;
+import com.android.scaffold.ui.base.BasePresenter;
 import com.android.scaffold.ui.main.contract.ContactMainContract;
 import com.android.scaffold.ui.main.model.ContactMainModel;
 
-import java.util.List;
+import rx.functions.Action1;
 
 /**
  * Created by wuganlin on 2017/3/31.
  */
 
-public class ContactMainPresenter implements ContactMainContract.Presenter {
+public class ContactMainPresenter extends BasePresenter<ContactMainContract.View> implements ContactMainContract.Presenter {
+    private static final String TAG = "ContactMainPresenter";
+    private static final String KEY_LOAD_CONTACTS = "loadContacts";
 
     private ContactMainContract.Model mModel;
-    private ContactMainContract.View mView;
     private Context mContext;
 
-    public ContactMainPresenter(Context context, ContactMainContract.View view) {
+    public ContactMainPresenter(Context context) {
         mContext = context;
-        mModel = new ContactMainModel();
-        mView = view;
+        mModel = new ContactMainModel(context);
     }
 
     @Override
     public void loadContacts() {
-        List<Contact> contacts = mModel.getContacts();
-        mView.showContacts(contacts);
+        execute(KEY_LOAD_CONTACTS, mModel.getContacts(), new Action1<ContactPageSource>() {
+            @Override
+            public void call(ContactPageSource contacts) {
+                mView.showContacts(contacts);
+            }
+        }, new Action1<Throwable>() {
+            @Override
+            public void call(Throwable throwable) {
+                Log.e(TAG, "loadContacts failed", throwable);
+            }
+        });
     }
 }
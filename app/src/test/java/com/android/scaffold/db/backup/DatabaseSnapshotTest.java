@@ -0,0 +1,153 @@
+package com.android.scaffold.db.backup;
+
+import android.content.Context;
+
+import com.android.scaffold.BuildConfig;
+import com.android.scaffold.db.DatabaseHelper;
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.db.service.ContactService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * 快照、修改、恢复的完整往返，以及损坏快照不会覆盖数据库
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DatabaseSnapshotTest {
+    private Context mContext;
+    private File mSnapshot;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mSnapshot = new File(mContext.getCacheDir(), "contacts.snapshot");
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.releaseHelper();
+        mSnapshot.delete();
+        DatabaseHelper.getArchiveSnapshot(mSnapshot).delete();
+    }
+
+    @Test
+    public void snapshotMutateRestore_returnsToSnapshot() throws Exception {
+        ContactService service = new ContactService(mContext);
+        for (int i = 0; i < 20; i++) {
+            service.create(contact("before" + i));
+        }
+        Set<String> expected = names(service);
+
+        DatabaseHelper.getHelper(mContext).snapshot(mSnapshot, null);
+        assertTrue(mSnapshot.length() > 0);
+
+        service.create(contact("after"));
+        service.deleteById(service.queryAll().get(0).getId());
+        assertNotEquals(expected, names(service));
+
+        DatabaseHelper.restore(mContext, mSnapshot);
+
+        assertEquals(expected, names(new ContactService(mContext)));
+    }
+
+    @Test
+    public void snapshotMutateRestore_includesArchive() throws Exception {
+        ContactService service = new ContactService(mContext);
+        for (int i = 0; i < 10; i++) {
+            service.create(contact("archived" + i));
+        }
+        assertEquals(10, service.archive(Contact.COLUMN_UPDATED_AT, Long.MAX_VALUE, 4));
+        for (int i = 0; i < 10; i++) {
+            service.create(contact("hot" + i));
+        }
+        Set<String> expected = names(service, true);
+
+        DatabaseHelper.getHelper(mContext).snapshot(mSnapshot, null);
+        assertTrue(DatabaseHelper.getArchiveSnapshot(mSnapshot).isFile());
+
+        service.deleteById(service.queryAll(true).get(0).getId());
+        service.archive(Contact.COLUMN_UPDATED_AT, Long.MAX_VALUE, 4);
+        assertEquals(0, service.count());
+
+        DatabaseHelper.restore(mContext, mSnapshot);
+
+        ContactService restored = new ContactService(mContext);
+        assertEquals(10, restored.count());
+        assertEquals(20, restored.count(true));
+        assertEquals(expected, names(restored, true));
+    }
+
+    @Test
+    public void restoreSnapshotWithoutArchive_dropsArchive() throws Exception {
+        ContactService service = new ContactService(mContext);
+        for (int i = 0; i < 5; i++) {
+            service.create(contact("name" + i));
+        }
+        DatabaseHelper.getHelper(mContext).snapshot(mSnapshot, null);
+        assertFalse(DatabaseHelper.getArchiveSnapshot(mSnapshot).exists());
+
+        assertEquals(5, service.archive(Contact.COLUMN_UPDATED_AT, Long.MAX_VALUE, 4));
+        assertTrue(DatabaseHelper.getHelper(mContext).hasArchive());
+
+        DatabaseHelper.restore(mContext, mSnapshot);
+
+        ContactService restored = new ContactService(mContext);
+        assertFalse(DatabaseHelper.getHelper(mContext).hasArchive());
+        assertEquals(5, restored.count());
+        assertEquals(5, restored.count(true));
+    }
+
+    @Test
+    public void restoreCorruptSnapshot_keepsDatabase() throws Exception {
+        ContactService service = new ContactService(mContext);
+        service.create(contact("kept"));
+        FileOutputStream out = new FileOutputStream(mSnapshot);
+        try {
+            out.write("not a database".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        try {
+            DatabaseHelper.restore(mContext, mSnapshot);
+            fail("corrupt snapshot restored");
+        } catch (IOException expected) {
+            //原数据库保持不变
+        }
+
+        assertEquals(1, new ContactService(mContext).count());
+    }
+
+    private static Set<String> names(ContactService service) throws Exception {
+        return names(service, false);
+    }
+
+    private static Set<String> names(ContactService service, boolean includeArchived) throws Exception {
+        Set<String> names = new TreeSet<>();
+        for (Contact contact : service.queryAll(includeArchived)) {
+            names.add(contact.getName());
+        }
+        return names;
+    }
+
+    private static Contact contact(String name) {
+        Contact contact = new Contact();
+        contact.setName(name);
+        return contact;
+    }
+}
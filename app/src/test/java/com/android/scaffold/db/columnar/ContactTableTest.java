@@ -0,0 +1,123 @@
+package com.android.scaffold.db.columnar;
+
+import com.android.scaffold.db.entity.Contact;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * ContactTable的null位图、name去重、过滤和排序
+ */
+public class ContactTableTest {
+
+    private static ContactTable sample() {
+        return new ContactTable.Builder(2)
+                .add(1, "alice", false, 30)
+                .add(2, "bob", true, 0)
+                .add(3, "alice", false, 25)
+                .add(4, null, false, 40)
+                .add(5, "carol", false, 25)
+                .build();
+    }
+
+    @Test
+    public void build_growsAndDeduplicatesNames() {
+        ContactTable table = sample();
+        assertEquals(5, table.size());
+        assertEquals(3, table.distinctNames());
+        ContactTable.Row row = table.newRow();
+        assertSame(row.moveTo(0).getName(), row.moveTo(2).getName());
+        assertNull(row.moveTo(3).getName());
+    }
+
+    @Test
+    public void nullBitmap_tracksNullAges() {
+        ContactTable.Builder builder = new ContactTable.Builder();
+        for (int i = 0; i < 200; i++) {
+            builder.add(i, "n" + (i % 7), i % 3 == 0, i);
+        }
+        ContactTable table = builder.build();
+        ContactTable.Row row = table.newRow();
+        for (int i = 0; i < 200; i++) {
+            row.moveTo(i);
+            assertEquals(i % 3 == 0, row.isAgeNull());
+            if (!row.isAgeNull()) {
+                assertEquals(i, row.getAge());
+            }
+        }
+        assertEquals(7, table.distinctNames());
+    }
+
+    @Test
+    public void toContact_restoresBoxedNulls() {
+        Contact contact = sample().toContact(1);
+        assertEquals(Long.valueOf(2), contact.getId());
+        assertEquals("bob", contact.getName());
+        assertNull(contact.getAge());
+    }
+
+    @Test
+    public void filterThenSort_sharesColumns() {
+        ContactTable adults = sample().filter(new ContactTable.RowPredicate() {
+            @Override
+            public boolean test(ContactTable.Row row) {
+                return !row.isAgeNull() && row.getAge() >= 25;
+            }
+        });
+        assertEquals(4, adults.size());
+
+        ContactTable byAge = adults.sort(ContactTable.BY_AGE);
+        ContactTable.Row row = byAge.newRow();
+        assertEquals(3, row.moveTo(0).getId());
+        assertEquals(5, row.moveTo(1).getId());
+        assertEquals(1, row.moveTo(2).getId());
+        assertEquals(4, row.moveTo(3).getId());
+
+        ContactTable byName = sample().sort(ContactTable.BY_NAME);
+        row = byName.newRow();
+        assertEquals("alice", row.moveTo(0).getName());
+        assertNull(row.moveTo(4).getName());
+    }
+
+    @Test
+    public void sort_isStableForEqualKeys() {
+        ContactTable.Builder builder = new ContactTable.Builder();
+        for (int i = 0; i < 100; i++) {
+            builder.add(i, null, i % 5 == 0, (100 - i) % 4);
+        }
+        ContactTable sorted = builder.build().sort(ContactTable.BY_AGE);
+        ContactTable.Row row = sorted.newRow();
+        ContactTable.Row previous = sorted.newRow();
+        for (int i = 1; i < sorted.size(); i++) {
+            row.moveTo(i);
+            previous.moveTo(i - 1);
+            int order = ContactTable.BY_AGE.compare(previous, row);
+            assertTrue(order < 0 || (order == 0 && previous.getId() < row.getId()));
+        }
+    }
+
+    @Test
+    public void builder_canBeReusedAfterBuild() {
+        ContactTable.Builder builder = new ContactTable.Builder();
+        builder.add(1, "alice", true, 0).add(2, "bob", false, 20).build();
+        ContactTable second = builder.add(3, "carol", false, 30).build();
+        assertEquals(1, second.size());
+        assertEquals(1, second.distinctNames());
+        ContactTable.Row row = second.newRow().moveTo(0);
+        assertEquals(3, row.getId());
+        assertEquals("carol", row.getName());
+        assertFalse(row.isAgeNull());
+        assertEquals(30, row.getAge());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void row_rejectsOutOfRange() {
+        sample().filter(new ContactTable.RowPredicate() {
+            @Override
+            public boolean test(ContactTable.Row row) {
+                return false;
+            }
+        }).newRow().moveTo(0);
+    }
+}
@@ -0,0 +1,101 @@
+package com.android.scaffold.db.dao.base;
+
+import com.android.scaffold.BuildConfig;
+import com.android.scaffold.db.DatabaseHelper;
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.db.service.ContactService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+/**
+ * ChunkedWriter按批提交，flush写入剩余实体，失败的批次整体回滚
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ChunkedWriterTest {
+    private static final int CHUNK_SIZE = 3;
+
+    private ContactService mService;
+    private ChunkedWriter<Contact, Long> mWriter;
+
+    @Before
+    public void setUp() {
+        mService = new ContactService(RuntimeEnvironment.application);
+        mWriter = new ChunkedWriter<>(mService, CHUNK_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.releaseHelper();
+    }
+
+    @Test
+    public void add_commitsOnlyFullChunks() throws Exception {
+        mWriter.add(contact("a"));
+        mWriter.add(contact("b"));
+        assertEquals(0, mService.count());
+        assertEquals(0, mWriter.getWritten());
+
+        mWriter.add(contact("c"));
+        assertEquals(CHUNK_SIZE, mService.count());
+        assertEquals(CHUNK_SIZE, mWriter.getWritten());
+
+        mWriter.add(contact("d"));
+        assertEquals(CHUNK_SIZE, mService.count());
+    }
+
+    @Test
+    public void flush_writesRemainder() throws Exception {
+        for (int i = 0; i < CHUNK_SIZE + 2; i++) {
+            mWriter.add(contact("name" + i));
+        }
+        mWriter.flush();
+        assertEquals(CHUNK_SIZE + 2, mService.count());
+        assertEquals(CHUNK_SIZE + 2, mWriter.getWritten());
+
+        //没有待写入的实体时flush不做任何事
+        mWriter.flush();
+        assertEquals(CHUNK_SIZE + 2, mWriter.getWritten());
+        for (Contact contact : mService.queryAll()) {
+            assertNotNull(contact.getId());
+            assertNotNull(contact.getUpdatedAt());
+        }
+    }
+
+    @Test
+    public void failedChunk_isRolledBack() throws Exception {
+        mService.getDao().executeRaw("CREATE TEMP TRIGGER reject_bad BEFORE INSERT ON tb_contact"
+                + " WHEN NEW.name = 'bad' BEGIN SELECT RAISE(ABORT, 'bad'); END");
+        mWriter.add(contact("a"));
+        mWriter.add(contact("b"));
+        mWriter.add(contact("c"));
+
+        mWriter.add(contact("d"));
+        mWriter.add(contact("bad"));
+        try {
+            mWriter.add(contact("e"));
+            fail();
+        } catch (SQLException expected) {
+        }
+        //前一批已提交，失败批次中排在前面的d也不能留下
+        assertEquals(CHUNK_SIZE, mService.count());
+        assertEquals(CHUNK_SIZE, mWriter.getWritten());
+        assertTrue(mService.query("name", "d").isEmpty());
+    }
+
+    private static Contact contact(String name) {
+        Contact contact = new Contact();
+        contact.setName(name);
+        return contact;
+    }
+}
@@ -0,0 +1,179 @@
+package com.android.scaffold.db.maintenance;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+
+import com.android.scaffold.BuildConfig;
+import com.android.scaffold.db.DatabaseHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 维护步骤只做有上限的incremental_vacuum和逐表ANALYZE，非增量模式的数据库不做完整VACUUM，读取也会推迟维护
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DatabaseMaintenanceSchedulerTest {
+    private static final int MAX_STEPS = 100;
+    private static final int PAGES_PER_STEP = 256;
+    private static final long IDLE_MILLIS = 5000;
+
+    private DatabaseMaintenanceScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mScheduler = new DatabaseMaintenanceScheduler(RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.releaseHelper();
+    }
+
+    @Test
+    public void newDatabase_usesIncrementalAutoVacuum() {
+        SQLiteDatabase database = DatabaseHelper.getHelper(RuntimeEnvironment.application).getWritableDatabase();
+        assertEquals(2, pragmaLong(database, "PRAGMA auto_vacuum"));
+    }
+
+    @Test
+    public void incrementalDatabase_vacuumsInBoundedSteps() {
+        SQLiteDatabase database = DatabaseHelper.getHelper(RuntimeEnvironment.application).getWritableDatabase();
+        fillAndDelete(database, "tb_contact", "name");
+        long freePages = pragmaLong(database, "PRAGMA freelist_count");
+        assertTrue(freePages > PAGES_PER_STEP);
+
+        int steps = 0;
+        while (mScheduler.runOneStep(database)) {
+            long after = pragmaLong(database, "PRAGMA freelist_count");
+            assertTrue(freePages - after <= PAGES_PER_STEP);
+            freePages = after;
+            assertTrue(++steps < MAX_STEPS);
+        }
+        assertEquals(0, pragmaLong(database, "PRAGMA freelist_count"));
+        for (MaintenanceReport report : mScheduler.getReports()) {
+            assertFalse(report.step, report.step.startsWith("vacuum"));
+        }
+    }
+
+    @Test
+    public void analyze_runsOneTablePerStep() {
+        SQLiteDatabase database = DatabaseHelper.getHelper(RuntimeEnvironment.application).getWritableDatabase();
+        database.execSQL("CREATE TABLE extra (id INTEGER PRIMARY KEY, name TEXT)");
+        database.execSQL("CREATE INDEX extra_name_idx ON extra (name)");
+        database.execSQL("INSERT INTO extra (name) VALUES ('a'), ('b')");
+        List<String> expected = new ArrayList<>();
+        Cursor cursor = database.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table'"
+                + " AND name NOT LIKE 'sqlite_%' ORDER BY name", null);
+        try {
+            while (cursor.moveToNext()) {
+                expected.add("analyze " + cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        assertTrue(expected.contains("analyze extra"));
+        assertTrue(expected.contains("analyze tb_contact"));
+
+        int steps = 0;
+        while (mScheduler.runOneStep(database)) {
+            assertTrue(++steps < MAX_STEPS);
+        }
+        List<String> analyzed = new ArrayList<>();
+        for (MaintenanceReport report : mScheduler.getReports()) {
+            if (report.step.startsWith("analyze")) {
+                analyzed.add(report.step);
+            }
+        }
+        assertEquals(expected, analyzed);
+        assertTrue(pragmaLong(database, "SELECT COUNT(*) FROM sqlite_stat1 WHERE tbl = 'extra'") > 0);
+
+        //统计完成后没有新的写入，不再重复ANALYZE
+        assertFalse(mScheduler.runOneStep(database));
+        assertEquals(expected.size(), countAnalyzeReports());
+    }
+
+    @Test
+    public void reads_resetIdleTime() {
+        SystemClock.sleep(IDLE_MILLIS * 2);
+        assertTrue(mScheduler.getIdleMillis() >= IDLE_MILLIS);
+
+        mScheduler.onRead();
+
+        assertTrue(mScheduler.getIdleMillis() < IDLE_MILLIS);
+    }
+
+    @Test
+    public void nonIncrementalDatabase_keepsFreePages() {
+        File file = new File(RuntimeEnvironment.application.getCacheDir(), "plain.db");
+        SQLiteDatabase database = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            database.execSQL("CREATE TABLE t (id INTEGER PRIMARY KEY, name TEXT)");
+            fillAndDelete(database, "t", "name");
+            assertEquals(0, pragmaLong(database, "PRAGMA auto_vacuum"));
+            long pageCount = pragmaLong(database, "PRAGMA page_count");
+            long freePages = pragmaLong(database, "PRAGMA freelist_count");
+
+            int steps = 0;
+            while (mScheduler.runOneStep(database)) {
+                assertTrue(++steps < MAX_STEPS);
+            }
+            assertEquals(pageCount, pragmaLong(database, "PRAGMA page_count"));
+            assertEquals(freePages, pragmaLong(database, "PRAGMA freelist_count"));
+        } finally {
+            database.close();
+        }
+    }
+
+    private int countAnalyzeReports() {
+        int count = 0;
+        for (MaintenanceReport report : mScheduler.getReports()) {
+            if (report.step.startsWith("analyze")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 写入约3MB数据后全部删除，留下几百个空闲页
+     */
+    private static void fillAndDelete(SQLiteDatabase database, String table, String column) {
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < 3000; i++) {
+                database.execSQL("INSERT INTO " + table + " (" + column + ") VALUES (?)", new Object[]{value + i});
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        database.execSQL("DELETE FROM " + table);
+    }
+
+    private static long pragmaLong(SQLiteDatabase database, String sql) {
+        Cursor cursor = database.rawQuery(sql, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.android.scaffold.db.service;
+
+import com.android.scaffold.BuildConfig;
+import com.android.scaffold.db.DatabaseHelper;
+import com.android.scaffold.db.entity.Contact;
+import com.j256.ormlite.stmt.UpdateBuilder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 冷库数据的删除，以及各写入路径对updated_at的维护
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ContactServiceTest {
+    private ContactService mService;
+
+    @Before
+    public void setUp() {
+        mService = new ContactService(RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.releaseHelper();
+    }
+
+    @Test
+    public void deleteById_removesArchivedRow() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mService.create(contact("name" + i));
+        }
+        assertEquals(5, mService.archive(Contact.COLUMN_UPDATED_AT, Long.MAX_VALUE, 2));
+        assertEquals(0, mService.count());
+        assertEquals(5, mService.count(true));
+
+        Long id = mService.queryAll(true).get(0).getId();
+        assertEquals(1, mService.deleteById(id));
+
+        assertEquals(4, mService.count(true));
+        for (Contact contact : mService.queryAll(true)) {
+            assertNotEquals(id, contact.getId());
+        }
+    }
+
+    @Test
+    public void archiveWithoutStaleRows_doesNotCreateArchive() throws Exception {
+        mService.create(contact("fresh"));
+
+        assertEquals(0, mService.archiveStale(TimeUnit.DAYS.toMillis(1)));
+        assertEquals(1, mService.count(true));
+        assertEquals(1, mService.queryAll(true).size());
+
+        DatabaseHelper helper = DatabaseHelper.getHelper(RuntimeEnvironment.application);
+        assertFalse(helper.hasArchive());
+        assertFalse(mService.attachArchiveIfExists());
+    }
+
+    @Test
+    public void update_refreshesUpdatedAt() throws Exception {
+        Contact contact = contact("alice");
+        mService.create(contact);
+        contact.setUpdatedAt(1L);
+        contact.setName("alice2");
+        mService.update(contact);
+
+        assertTrue(mService.queryById(contact.getId()).getUpdatedAt() > 1L);
+    }
+
+    @Test
+    public void preparedUpdate_refreshesUpdatedAt() throws Exception {
+        Contact contact = contact("bob");
+        mService.create(contact);
+        mService.getDao().executeRaw("UPDATE tb_contact SET " + Contact.COLUMN_UPDATED_AT + " = 1");
+        assertEquals(Long.valueOf(1L), mService.queryById(contact.getId()).getUpdatedAt());
+
+        UpdateBuilder<Contact, Long> updateBuilder = mService.getDao().updateBuilder();
+        updateBuilder.updateColumnValue("name", "bob2").where().idEq(contact.getId());
+        assertEquals(1, mService.update(updateBuilder.prepare()));
+
+        assertTrue(mService.queryById(contact.getId()).getUpdatedAt() > 1L);
+    }
+
+    private static Contact contact(String name) {
+        Contact contact = new Contact();
+        contact.setName(name);
+        contact.setAge(20);
+        return contact;
+    }
+}
@@ -0,0 +1,169 @@
+package com.android.scaffold.db.service;
+
+import android.content.Context;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 多线程同时查找时factory只调用一次，所有线程拿到同一个实例；
+ * 命中后的查找不加锁、不分配内存
+ */
+public class ServiceLocatorTest {
+    private static final int THREADS = 16;
+    private static final int LOOKUPS = 200000;
+
+    private static class Key {
+    }
+
+    private static class WarmKey {
+    }
+
+    private static final ServiceLocator.Factory<Object> WARM_FACTORY = new ServiceLocator.Factory<Object>() {
+        @Override
+        public Object create(Context context) {
+            return new Object();
+        }
+    };
+
+    @Test
+    public void concurrentLookups_createOnce() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        final ServiceLocator.Factory<Object> factory = new ServiceLocator.Factory<Object>() {
+            @Override
+            public Object create(Context context) {
+                created.incrementAndGet();
+                //放大竞争窗口
+                Thread.yield();
+                return new Object();
+            }
+        };
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch warmed = new CountDownLatch(THREADS);
+        final AtomicReference<Object> first = new AtomicReference<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        Object service = ServiceLocator.get(null, Key.class, factory);
+                        first.compareAndSet(null, service);
+                        warmed.countDown();
+                        warmed.await();
+                        for (int i = 0; i < LOOKUPS; i++) {
+                            if (ServiceLocator.get(null, Key.class, factory) != first.get()) {
+                                throw new AssertionError("different instance returned");
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void warmLookups_doNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        long id = Thread.currentThread().getId();
+        Object first = ServiceLocator.get(null, WarmKey.class, WARM_FACTORY);
+        for (int i = 0; i < LOOKUPS; i++) {
+            ServiceLocator.get(null, WarmKey.class, WARM_FACTORY);
+        }
+
+        long before = allocations.getThreadAllocatedBytes(id);
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (ServiceLocator.get(null, WarmKey.class, WARM_FACTORY) != first) {
+                fail("different instance returned");
+            }
+        }
+        long allocated = allocations.getThreadAllocatedBytes(id) - before;
+
+        //只允许测量本身的少量分配，每次查找分配一个对象就会远超这个值
+        assertTrue("allocated " + allocated + " bytes in " + LOOKUPS + " lookups", allocated < 4096);
+    }
+
+    @Test
+    public void warmLookups_doNotBlock() throws Exception {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        final Object first = ServiceLocator.get(null, WarmKey.class, WARM_FACTORY);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger blocked = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long id = Thread.currentThread().getId();
+                        start.await();
+                        long before = bean.getThreadInfo(id).getBlockedCount();
+                        for (int i = 0; i < LOOKUPS; i++) {
+                            if (ServiceLocator.get(null, WarmKey.class, WARM_FACTORY) != first) {
+                                throw new AssertionError("different instance returned");
+                            }
+                        }
+                        blocked.addAndGet((int) (bean.getThreadInfo(id).getBlockedCount() - before));
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        //持有类锁期间查找照常完成，说明命中路径没有全局锁
+        synchronized (ServiceLocator.class) {
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(0, blocked.get());
+    }
+
+    @Test
+    public void clear_recreatesOnNextLookup() {
+        final AtomicInteger created = new AtomicInteger();
+        ServiceLocator.Factory<Object> factory = new ServiceLocator.Factory<Object>() {
+            @Override
+            public Object create(Context context) {
+                created.incrementAndGet();
+                return new Object();
+            }
+        };
+        Object before = ServiceLocator.get(null, ServiceLocatorTest.class, factory);
+        assertSame(before, ServiceLocator.get(null, ServiceLocatorTest.class, factory));
+        ServiceLocator.clear();
+        assertNotSame(before, ServiceLocator.get(null, ServiceLocatorTest.class, factory));
+        assertEquals(2, created.get());
+    }
+}
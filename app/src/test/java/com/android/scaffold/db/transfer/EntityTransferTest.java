@@ -0,0 +1,140 @@
+package com.android.scaffold.db.transfer;
+
+import com.android.scaffold.BuildConfig;
+import com.android.scaffold.db.DatabaseHelper;
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.db.service.ContactService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 通过BaseDao.exportTo和importFrom在真实数据库上往返
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class EntityTransferTest {
+    private static final int ROWS = 1000;
+
+    private ContactService mService;
+
+    @Before
+    public void setUp() {
+        mService = new ContactService(RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.releaseHelper();
+    }
+
+    @Test
+    public void exportThenImport_restoresRows() throws Exception {
+        for (int i = 0; i < ROWS; i++) {
+            Contact contact = new Contact();
+            contact.setName(i % 7 == 0 ? null : "联系人" + i);
+            contact.setAge(i % 5 == 0 ? null : i % 100);
+            mService.create(contact);
+        }
+        List<Contact> before = mService.queryAll();
+        byte[] bytes = export();
+
+        mService.getDao().executeRaw("DELETE FROM tb_contact");
+        assertEquals(0, mService.count());
+
+        assertEquals(ROWS, mService.importFrom(Channels.newChannel(new ByteArrayInputStream(bytes)), 64));
+
+        List<Contact> after = mService.queryAll();
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++) {
+            assertEquals(before.get(i).getId(), after.get(i).getId());
+            assertEquals(before.get(i).getName(), after.get(i).getName());
+            assertEquals(before.get(i).getAge(), after.get(i).getAge());
+            assertEquals(before.get(i).getUpdatedAt(), after.get(i).getUpdatedAt());
+        }
+    }
+
+    @Test
+    public void import_replacesRowsWithSameId() throws Exception {
+        Contact contact = new Contact();
+        contact.setName("exported");
+        mService.create(contact);
+        byte[] bytes = export();
+
+        contact.setName("changed");
+        mService.update(contact);
+
+        assertEquals(1, mService.importFrom(Channels.newChannel(new ByteArrayInputStream(bytes)), 16));
+        assertEquals(1, mService.count());
+        assertEquals("exported", mService.queryById(contact.getId()).getName());
+    }
+
+    @Test
+    public void export_keepsDatabaseUsableBetweenBatches() throws Exception {
+        char[] padding = new char[200];
+        Arrays.fill(padding, 'x');
+        //每行约200字节，第一批还没读完缓冲区就会写出
+        for (int i = 0; i < ROWS; i++) {
+            Contact contact = new Contact();
+            contact.setName(new String(padding) + i);
+            mService.create(contact);
+        }
+        final ContactService service = mService;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final WritableByteChannel sink = Channels.newChannel(out);
+        //写channel时数据库没有被占用，其他写入可以提交
+        long exported = mService.exportTo(new WritableByteChannel() {
+            private boolean mWritten;
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (!mWritten) {
+                    mWritten = true;
+                    try {
+                        Contact contact = new Contact();
+                        contact.setName("during export");
+                        assertEquals(1, service.create(contact));
+                    } catch (SQLException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return sink.write(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        //导出期间新增的行rowid最大，在之后的批次中被导出
+        assertEquals(ROWS + 1, exported);
+    }
+
+    private byte[] export() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(mService.count(), mService.exportTo(Channels.newChannel(out)));
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,195 @@
+package com.android.scaffold.db.transfer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * RowWriter和RowReader的往返、跨缓冲区的值和损坏数据的处理
+ */
+public class RowCodecTest {
+
+    private static byte[] sample(int rows, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RowWriter writer = new RowWriter(Channels.newChannel(out), bufferSize);
+        writer.writeHeader("tb_contact", new String[]{"id", "name", "age"});
+        for (int i = 0; i < rows; i++) {
+            writer.beginRow();
+            writer.writeLong(i % 2 == 0 ? i : -i);
+            writer.writeText("联系人" + i);
+            if (i % 5 == 0) {
+                writer.writeNull();
+            } else {
+                writer.writeLong(i % 100);
+            }
+        }
+        assertEquals(rows, writer.finish());
+        return out.toByteArray();
+    }
+
+    private static RowReader reader(byte[] bytes, int bufferSize) {
+        return new RowReader(Channels.newChannel(new ByteArrayInputStream(bytes)), bufferSize);
+    }
+
+    @Test
+    public void roundTrip_preservesValuesAcrossSmallBuffers() throws IOException {
+        byte[] bytes = sample(1000, 16);
+        RowReader reader = reader(bytes, 16);
+        RowReader.Header header = reader.readHeader();
+        assertEquals("tb_contact", header.table);
+        assertArrayEquals(new String[]{"id", "name", "age"}, header.columns);
+        int i = 0;
+        while (reader.nextRow()) {
+            assertEquals(RowFormat.TYPE_INTEGER, reader.nextType());
+            assertEquals(i % 2 == 0 ? i : -i, reader.readLong());
+            assertEquals(RowFormat.TYPE_TEXT, reader.nextType());
+            assertEquals("联系人" + i, reader.readText());
+            if (i % 5 == 0) {
+                assertEquals(RowFormat.TYPE_NULL, reader.nextType());
+            } else {
+                assertEquals(RowFormat.TYPE_INTEGER, reader.nextType());
+                assertEquals(i % 100, reader.readLong());
+            }
+            i++;
+        }
+        assertEquals(1000, i);
+    }
+
+    @Test
+    public void largeValues_spanMultipleBuffers() throws IOException {
+        char[] chars = new char[5000];
+        Arrays.fill(chars, 'x');
+        String text = new String(chars);
+        byte[] blob = new byte[3000];
+        for (int i = 0; i < blob.length; i++) {
+            blob[i] = (byte) i;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RowWriter writer = new RowWriter(Channels.newChannel(out), 64);
+        writer.writeHeader("t", new String[]{"a", "b", "c", "d"});
+        writer.beginRow();
+        writer.writeText(text);
+        writer.writeBlob(blob);
+        writer.writeDouble(1.5);
+        writer.writeLong(Long.MIN_VALUE);
+        writer.finish();
+
+        RowReader reader = reader(out.toByteArray(), 64);
+        reader.readHeader();
+        assertTrue(reader.nextRow());
+        assertEquals(RowFormat.TYPE_TEXT, reader.nextType());
+        assertEquals(text, reader.readText());
+        assertEquals(RowFormat.TYPE_BLOB, reader.nextType());
+        assertArrayEquals(blob, reader.readBlob());
+        assertEquals(RowFormat.TYPE_FLOAT, reader.nextType());
+        assertEquals(1.5, reader.readDouble(), 0);
+        assertEquals(RowFormat.TYPE_INTEGER, reader.nextType());
+        assertEquals(Long.MIN_VALUE, reader.readLong());
+        assertFalse(reader.nextRow());
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncatedStream_failsWithEof() throws IOException {
+        byte[] bytes = sample(100, 1024);
+        RowReader reader = reader(Arrays.copyOf(bytes, bytes.length / 2), 1024);
+        reader.readHeader();
+        while (reader.nextRow()) {
+            for (int c = 0; c < 3; c++) {
+                byte type = reader.nextType();
+                if (type == RowFormat.TYPE_INTEGER) {
+                    reader.readLong();
+                } else if (type == RowFormat.TYPE_TEXT) {
+                    reader.readText();
+                }
+            }
+        }
+    }
+
+    /**
+     * 文件头到列数为止，之后的内容由调用方追加
+     */
+    private static ByteBuffer header(long columnCount) {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.putInt(RowFormat.MAGIC).put(RowFormat.VERSION);
+        buffer.put((byte) 1).put((byte) 't');
+        putVarint(buffer, columnCount);
+        return buffer;
+    }
+
+    private static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    @Test(expected = IOException.class)
+    public void zeroColumns_isRejected() throws IOException {
+        reader(bytes(header(0)), 16).readHeader();
+    }
+
+    @Test(expected = IOException.class)
+    public void hugeColumnCount_isRejected() throws IOException {
+        reader(bytes(header(Integer.MAX_VALUE + 1L)), 16).readHeader();
+    }
+
+    @Test(expected = IOException.class)
+    public void negativeTextLength_isRejected() throws IOException {
+        ByteBuffer buffer = header(1);
+        //超出int范围的长度强转后为负数
+        putVarint(buffer, 0xFFFFFFFFL);
+        reader(bytes(buffer), 16).readHeader();
+    }
+
+    @Test(expected = IOException.class)
+    public void oversizedBlobLength_isRejected() throws IOException {
+        ByteBuffer buffer = header(1);
+        buffer.put((byte) 1).put((byte) 'a');
+        buffer.put(RowFormat.TAG_ROW).put(RowFormat.TYPE_BLOB);
+        putVarint(buffer, RowFormat.MAX_VALUE_BYTES + 1L);
+        RowReader reader = reader(bytes(buffer), 16);
+        reader.readHeader();
+        assertTrue(reader.nextRow());
+        assertEquals(RowFormat.TYPE_BLOB, reader.nextType());
+        reader.readBlob();
+    }
+
+    @Test(expected = IOException.class)
+    public void wrongMagic_isRejected() throws IOException {
+        reader(new byte[]{1, 2, 3, 4, 5, 6}, 16).readHeader();
+    }
+
+    @Test
+    public void manyRows_roundTripAcrossBufferRefills() throws IOException {
+        int rows = 500000;
+        byte[] bytes = sample(rows, RowFormat.DEFAULT_BUFFER_SIZE);
+        RowReader reader = reader(bytes, RowFormat.DEFAULT_BUFFER_SIZE);
+        reader.readHeader();
+        int read = 0;
+        while (reader.nextRow()) {
+            for (int c = 0; c < 3; c++) {
+                byte type = reader.nextType();
+                if (type == RowFormat.TYPE_INTEGER) {
+                    reader.readLong();
+                } else if (type == RowFormat.TYPE_TEXT) {
+                    reader.readText();
+                }
+            }
+            read++;
+        }
+        assertEquals(rows, read);
+    }
+}
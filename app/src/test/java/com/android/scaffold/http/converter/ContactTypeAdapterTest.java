@@ -0,0 +1,44 @@
+package com.android.scaffold.http.converter;
+
+import com.android.scaffold.db.entity.Contact;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * ContactTypeAdapter的字段映射、null和未知字段
+ */
+public class ContactTypeAdapterTest {
+    private final ContactTypeAdapter mAdapter = new ContactTypeAdapter();
+
+    @Test
+    public void read_mapsFieldsAndSkipsUnknown() throws IOException {
+        Contact contact = mAdapter.fromJson("{\"id\":42,\"extra\":{\"a\":[1,2]},\"name\":\"张三\",\"age\":30}");
+        assertEquals(Long.valueOf(42), contact.getId());
+        assertEquals("张三", contact.getName());
+        assertEquals(Integer.valueOf(30), contact.getAge());
+    }
+
+    @Test
+    public void read_keepsNullFieldsNull() throws IOException {
+        Contact contact = mAdapter.fromJson("{\"id\":1,\"name\":null,\"age\":null}");
+        assertNull(contact.getName());
+        assertNull(contact.getAge());
+        assertNull(mAdapter.fromJson("null"));
+    }
+
+    @Test
+    public void write_roundTrips() throws IOException {
+        Contact contact = new Contact();
+        contact.setId(7L);
+        contact.setName("bob");
+        contact.setAge(null);
+        Contact copy = mAdapter.fromJson(mAdapter.toJson(contact));
+        assertEquals(contact.getId(), copy.getId());
+        assertEquals(contact.getName(), copy.getName());
+        assertNull(copy.getAge());
+    }
+}
@@ -0,0 +1,85 @@
+package com.android.scaffold.http.converter;
+
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.http.response.base.JSONResult;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.*;
+
+/**
+ * JSONResultStreamReader逐个回调数组元素，data之外的字段与顺序无关
+ */
+public class JSONResultStreamReaderTest {
+
+    private static class CollectingSink implements JSONResultStreamReader.ElementSink<Contact> {
+        final List<Contact> elements = new ArrayList<>();
+
+        @Override
+        public void onElement(Contact element) {
+            elements.add(element);
+        }
+    }
+
+    @Test
+    public void read_streamsElementsInOrder() throws IOException {
+        CollectingSink sink = new CollectingSink();
+        JSONResult<Integer> result = JSONResultStreamReader.read(new StringReader(
+                "{\"data\":[{\"id\":1,\"name\":\"a\"},null,{\"id\":2,\"name\":\"b\"}],\"errorcode\":0,\"errormsg\":null}"),
+                new ContactTypeAdapter(), sink);
+        assertEquals(Integer.valueOf(2), result.data);
+        assertEquals(Integer.valueOf(0), result.errorcode);
+        assertNull(result.errormsg);
+        assertEquals(2, sink.elements.size());
+        assertEquals(Long.valueOf(1), sink.elements.get(0).getId());
+        assertEquals("b", sink.elements.get(1).getName());
+    }
+
+    @Test
+    public void read_nullDataCountsZero() throws IOException {
+        CollectingSink sink = new CollectingSink();
+        JSONResult<Integer> result = JSONResultStreamReader.read(new StringReader(
+                "{\"errorcode\":3,\"errormsg\":\"denied\",\"data\":null}"), new ContactTypeAdapter(), sink);
+        assertEquals(Integer.valueOf(0), result.data);
+        assertEquals(Integer.valueOf(3), result.errorcode);
+        assertTrue(sink.elements.isEmpty());
+    }
+
+    @Test
+    public void read_sinkExceptionStopsReading() {
+        final int[] calls = new int[1];
+        try {
+            JSONResultStreamReader.read(new StringReader("{\"data\":[{\"id\":1},{\"id\":2},{\"id\":3}]}"),
+                    new ContactTypeAdapter(), new JSONResultStreamReader.ElementSink<Contact>() {
+                        @Override
+                        public void onElement(Contact element) throws IOException {
+                            if (++calls[0] == 2) {
+                                throw new IOException("disk full");
+                            }
+                        }
+                    });
+            fail();
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        assertEquals(2, calls[0]);
+    }
+
+    @Test
+    public void read_responseBody() throws IOException {
+        CollectingSink sink = new CollectingSink();
+        ResponseBody body = ResponseBody.create(MediaType.parse("application/json; charset=utf-8"),
+                "{\"errorcode\":0,\"data\":[{\"id\":9,\"name\":\"联系人\"}]}");
+        JSONResult<Integer> result = JSONResultStreamReader.read(body, new ContactTypeAdapter(), sink);
+        assertEquals(Integer.valueOf(1), result.data);
+        assertEquals("联系人", sink.elements.get(0).getName());
+    }
+}
@@ -0,0 +1,47 @@
+package com.android.scaffold.http.converter;
+
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.http.response.base.JSONResult;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * JSONResultTypeAdapter把data交给元素的TypeAdapter
+ */
+public class JSONResultTypeAdapterTest {
+    private final JSONResultTypeAdapter<Contact> mAdapter = new JSONResultTypeAdapter<>(new ContactTypeAdapter());
+
+    @Test
+    public void read_delegatesData() throws IOException {
+        JSONResult<Contact> result = mAdapter.fromJson(
+                "{\"errorcode\":0,\"errormsg\":\"ok\",\"unknown\":true,\"data\":{\"id\":3,\"name\":\"c\"}}");
+        assertEquals(Integer.valueOf(0), result.errorcode);
+        assertEquals("ok", result.errormsg);
+        assertEquals(Long.valueOf(3), result.data.getId());
+        assertEquals("c", result.data.getName());
+    }
+
+    @Test
+    public void read_handlesNulls() throws IOException {
+        JSONResult<Contact> result = mAdapter.fromJson("{\"errorcode\":null,\"errormsg\":null,\"data\":null}");
+        assertNull(result.errorcode);
+        assertNull(result.errormsg);
+        assertNull(result.data);
+        assertNull(mAdapter.fromJson("null"));
+    }
+
+    @Test
+    public void write_roundTrips() throws IOException {
+        JSONResult<Contact> result = new JSONResult<>();
+        result.errorcode = 5;
+        result.errormsg = "failed";
+        JSONResult<Contact> copy = mAdapter.fromJson(mAdapter.toJson(result));
+        assertEquals(Integer.valueOf(5), copy.errorcode);
+        assertEquals("failed", copy.errormsg);
+        assertNull(copy.data);
+    }
+}
@@ -0,0 +1,56 @@
+package com.android.scaffold.http.interceptor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * AimdLimiter的增长与回退
+ */
+public class AimdLimiterTest {
+
+    @Test
+    public void limit_growsAdditivelyWhenSaturated() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 10, 0.5);
+        for (int i = 0; i < 40; i++) {
+            assertTrue(limiter.acquire(0));
+            assertTrue(limiter.acquire(0));
+            limiter.onSuccess();
+            limiter.onSuccess();
+        }
+        assertTrue(limiter.getLimit() > 2);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void limit_doesNotGrowWhenIdle() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(8, 1, 10, 0.5);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.acquire(0));
+            limiter.onSuccess();
+        }
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void limit_backsOffMultiplicativelyAndRespectsMinimum() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(8, 2, 10, 0.5);
+        assertTrue(limiter.acquire(0));
+        limiter.onDropped();
+        assertEquals(4, limiter.getLimit());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.acquire(0));
+            limiter.onDropped();
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void acquire_timesOutAtLimit() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(1, 1, 1, 0.5);
+        assertTrue(limiter.acquire(0));
+        assertFalse(limiter.acquire(20));
+        limiter.onIgnored();
+        assertTrue(limiter.acquire(0));
+    }
+}
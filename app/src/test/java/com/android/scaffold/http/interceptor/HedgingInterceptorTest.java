@@ -0,0 +1,201 @@
+package com.android.scaffold.http.interceptor;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.*;
+
+/**
+ * 对冲请求与重试、并发限制组合时的行为：落败的请求被取消，
+ * 取消不计为过载也不重试。拦截器链与PocketMedicalApi.newClient相同，末端由脚本构造响应
+ */
+public class HedgingInterceptorTest {
+    private static final String URL = "http://localhost/v1/user/getContact";
+
+    /**
+     * 第一次调用慢，之后的调用立即返回；慢调用结束时如果已被取消则按OkHttp的方式抛出
+     */
+    private static class SlowThenFast implements Interceptor {
+        final AtomicInteger mCalls = new AtomicInteger();
+        final AtomicInteger mFinished = new AtomicInteger();
+        private final long mSlowMillis;
+
+        SlowThenFast(long slowMillis) {
+            mSlowMillis = slowMillis;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            int call = mCalls.getAndIncrement();
+            try {
+                if (call == 0) {
+                    try {
+                        Thread.sleep(mSlowMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if (chain.call().isCanceled()) {
+                        throw new IOException("Canceled");
+                    }
+                }
+                return new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .message("OK")
+                        .body(ResponseBody.create(MediaType.parse("text/plain"), call == 0 ? "slow" : "fast"))
+                        .build();
+            } finally {
+                mFinished.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 每次调用都一直等到被取消，然后按OkHttp的方式抛出
+     */
+    private static class UntilCanceled implements Interceptor {
+        final AtomicInteger mCalls = new AtomicInteger();
+        final AtomicInteger mFinished = new AtomicInteger();
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            mCalls.incrementAndGet();
+            try {
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (!chain.call().isCanceled() && System.nanoTime() < deadline) {
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                throw new IOException(chain.call().isCanceled() ? "Canceled" : "not canceled in time");
+            } finally {
+                mFinished.incrementAndGet();
+            }
+        }
+    }
+
+    private static OkHttpClient client(AimdLimiter limiter, EndpointLatencies latencies, Interceptor terminal) {
+        OkHttpClient delegate = new OkHttpClient.Builder()
+                .addInterceptor(new RetryInterceptor(3, 1, 5))
+                .addInterceptor(new AdaptiveConcurrencyInterceptor(limiter, latencies))
+                .addInterceptor(terminal)
+                .build();
+        OkHttpClient.Builder builder = delegate.newBuilder();
+        builder.interceptors().add(0, new HedgingInterceptor(delegate, latencies));
+        return builder.build();
+    }
+
+    private static void awaitFinished(SlowThenFast terminal, int calls) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (terminal.mFinished.get() < calls && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(calls, terminal.mFinished.get());
+    }
+
+    @Test
+    public void slowPrimary_isHedgedAndCanceledWithoutShrinkingLimit() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(8, 1, 32, 0.5);
+        EndpointLatencies latencies = new EndpointLatencies();
+        Request request = new Request.Builder().url(URL).header(HedgingInterceptor.HEADER_HEDGE, "true").build();
+        for (int i = 0; i < 50; i++) {
+            latencies.get(request).record(20);
+        }
+        SlowThenFast terminal = new SlowThenFast(500);
+
+        Response response = client(limiter, latencies, terminal).newCall(request).execute();
+
+        assertEquals("fast", response.body().string());
+        awaitFinished(terminal, 2);
+        //落败的请求被取消后既不重试，也不让并发上限回退
+        assertEquals(2, terminal.mCalls.get());
+        assertEquals(8, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void canceledCall_cancelsPrimaryAndHedge() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(8, 1, 32, 0.5);
+        EndpointLatencies latencies = new EndpointLatencies();
+        Request request = new Request.Builder().url(URL).header(HedgingInterceptor.HEADER_HEDGE, "true").build();
+        for (int i = 0; i < 50; i++) {
+            latencies.get(request).record(20);
+        }
+        final UntilCanceled terminal = new UntilCanceled();
+        final Call call = client(limiter, latencies, terminal).newCall(request);
+        final AtomicReference<Throwable> result = new AtomicReference<>();
+        Thread caller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    call.execute().close();
+                } catch (Throwable e) {
+                    result.set(e);
+                }
+            }
+        });
+        caller.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (terminal.mCalls.get() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, terminal.mCalls.get());
+
+        call.cancel();
+        caller.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertFalse(caller.isAlive());
+        assertTrue(result.get() instanceof IOException);
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (terminal.mFinished.get() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        //两个delegate请求都已取消：不再重试，并发许可全部归还
+        assertEquals(2, terminal.mCalls.get());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    public void fastPrimary_isNotHedged() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(8, 1, 32, 0.5);
+        EndpointLatencies latencies = new EndpointLatencies();
+        Request request = new Request.Builder().url(URL).header(HedgingInterceptor.HEADER_HEDGE, "true").build();
+        SlowThenFast terminal = new SlowThenFast(0);
+
+        Response response = client(limiter, latencies, terminal).newCall(request).execute();
+
+        assertEquals("slow", response.body().string());
+        assertEquals(1, terminal.mCalls.get());
+        assertEquals(1, latencies.get(request).size());
+    }
+
+    @Test
+    public void requestWithoutHeader_passesThrough() throws Exception {
+        SlowThenFast terminal = new SlowThenFast(0);
+        Request request = new Request.Builder().url(URL).build();
+
+        Response response = client(new AimdLimiter(), new EndpointLatencies(), terminal).newCall(request).execute();
+
+        assertEquals(200, response.code());
+        response.close();
+        assertEquals(1, terminal.mCalls.get());
+    }
+}
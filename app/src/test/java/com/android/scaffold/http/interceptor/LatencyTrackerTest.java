@@ -0,0 +1,43 @@
+package com.android.scaffold.http.interceptor;
+
+import org.junit.Test;
+
+import okhttp3.Request;
+
+import static org.junit.Assert.*;
+
+/**
+ * LatencyTracker的分位数与EndpointLatencies的按接口隔离
+ */
+public class LatencyTrackerTest {
+
+    @Test
+    public void percentile_overWindow() {
+        LatencyTracker tracker = new LatencyTracker(100);
+        assertEquals(-1, tracker.percentile(0.95));
+        for (int i = 1; i <= 100; i++) {
+            tracker.record(i);
+        }
+        assertEquals(95, tracker.percentile(0.95));
+        assertEquals(50, tracker.percentile(0.5));
+        for (int i = 0; i < 100; i++) {
+            tracker.record(1000);
+        }
+        assertEquals(1000, tracker.percentile(0.5));
+    }
+
+    @Test
+    public void endpoints_areTrackedSeparately() {
+        EndpointLatencies latencies = new EndpointLatencies();
+        Request lookup = new Request.Builder().url("http://localhost/v1/user/getContact?uid=1").build();
+        Request sameLookup = new Request.Builder().url("http://localhost/v1/user/getContact?uid=2").build();
+        Request changes = new Request.Builder().url("http://localhost/v1/user/getContactChanges").build();
+        for (int i = 0; i < 50; i++) {
+            latencies.get(lookup).record(10);
+            latencies.get(changes).record(2000);
+        }
+        assertSame(latencies.get(lookup), latencies.get(sameLookup));
+        assertEquals(10, latencies.get(lookup).percentile(0.95));
+        assertEquals(2000, latencies.get(changes).percentile(0.95));
+    }
+}
@@ -0,0 +1,143 @@
+package com.android.scaffold.http.interceptor;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.*;
+
+/**
+ * RetryInterceptor的退避、重试条件和取消处理，响应由末端拦截器直接构造，不走网络
+ */
+public class RetryInterceptorTest {
+
+    /**
+     * 按顺序返回给定状态码，-1表示抛出IOException，-2表示先取消请求再抛出
+     */
+    private static class ScriptedInterceptor implements Interceptor {
+        private final int[] mCodes;
+        final AtomicInteger mAttempts = new AtomicInteger();
+
+        ScriptedInterceptor(int... codes) {
+            mCodes = codes;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            int attempt = mAttempts.getAndIncrement();
+            int code = mCodes[Math.min(attempt, mCodes.length - 1)];
+            if (code == -2) {
+                chain.call().cancel();
+                throw new IOException("Canceled");
+            }
+            if (code == -1) {
+                throw new IOException("connection reset");
+            }
+            return new Response.Builder()
+                    .request(chain.request())
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(code)
+                    .message("scripted")
+                    .body(ResponseBody.create(MediaType.parse("text/plain"), "attempt " + attempt))
+                    .build();
+        }
+    }
+
+    private static OkHttpClient client(ScriptedInterceptor scripted) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(new RetryInterceptor(3, 1, 5))
+                .addInterceptor(scripted)
+                .build();
+    }
+
+    private static Request get() {
+        return new Request.Builder().url("http://localhost/v1/user/getContact").build();
+    }
+
+    @Test
+    public void backoff_isJitteredWithinCeiling() {
+        RetryInterceptor retry = new RetryInterceptor(5, 100, 300);
+        for (int i = 0; i < 50; i++) {
+            long first = retry.backoffMillis(1);
+            long fourth = retry.backoffMillis(4);
+            assertTrue(first >= 0 && first <= 100);
+            assertTrue(fourth >= 0 && fourth <= 300);
+        }
+    }
+
+    @Test
+    public void idempotentRequest_retriesUntilSuccess() throws IOException {
+        ScriptedInterceptor scripted = new ScriptedInterceptor(503, -1, 200);
+        Response response = client(scripted).newCall(get()).execute();
+        assertEquals(200, response.code());
+        assertEquals("attempt 2", response.body().string());
+        assertEquals(3, scripted.mAttempts.get());
+    }
+
+    @Test
+    public void retries_stopAtMaxAttempts() throws IOException {
+        ScriptedInterceptor scripted = new ScriptedInterceptor(503);
+        Response response = client(scripted).newCall(get()).execute();
+        assertEquals(503, response.code());
+        response.close();
+        assertEquals(3, scripted.mAttempts.get());
+    }
+
+    @Test
+    public void post_withoutIdempotencyKey_isNotRetried() {
+        ScriptedInterceptor scripted = new ScriptedInterceptor(-1, 200);
+        Request post = new Request.Builder().url("http://localhost/v1/user/save")
+                .post(RequestBody.create(MediaType.parse("text/plain"), "x")).build();
+        try {
+            client(scripted).newCall(post).execute();
+            fail("expected IOException");
+        } catch (IOException expected) {
+            assertEquals(1, scripted.mAttempts.get());
+        }
+    }
+
+    @Test
+    public void canceledCall_isNeverRetried() {
+        ScriptedInterceptor scripted = new ScriptedInterceptor(-2, 200);
+        try {
+            client(scripted).newCall(get()).execute();
+            fail("expected IOException");
+        } catch (IOException expected) {
+            assertEquals(1, scripted.mAttempts.get());
+        }
+    }
+
+    @Test
+    public void interruptedWhileWaitingForLimit_isNotRetried() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(1, 1, 1, 0.5);
+        assertTrue(limiter.acquire(0));
+        ScriptedInterceptor scripted = new ScriptedInterceptor(200);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(new RetryInterceptor(3, 1, 5))
+                .addInterceptor(new AdaptiveConcurrencyInterceptor(limiter, new EndpointLatencies()))
+                .addInterceptor(scripted)
+                .build();
+        Request request = new Request.Builder().url("http://localhost/v1/user/getContact").build();
+
+        Thread.currentThread().interrupt();
+        try {
+            client.newCall(request).execute();
+            fail("interrupted call completed");
+        } catch (InterruptedIOException expected) {
+            //中断标记保留，调用方仍能看到
+            assertTrue(Thread.interrupted());
+        }
+        assertEquals(0, scripted.mAttempts.get());
+    }
+}
@@ -0,0 +1,44 @@
+package com.android.scaffold.loadtest;
+
+/**
+ * 压测参数，均可通过-Dloadtest.xxx系统属性覆盖
+ */
+class LoadTestConfig {
+    /**
+     * contact：单个联系人（带对冲），contacts：流式解析联系人列表
+     */
+    String endpoint = "contact";
+    int concurrency = 16;
+    int warmupRequests = 500;
+    int requests = 5000;
+    long latencyMillis = 20;
+    long latencyJitterMillis = 10;
+    int payloadBytes = 256;
+    int listSize = 1000;
+    double errorRate = 0.0;
+
+    static LoadTestConfig fromSystemProperties() {
+        LoadTestConfig config = new LoadTestConfig();
+        config.endpoint = System.getProperty("loadtest.endpoint", config.endpoint);
+        config.concurrency = Integer.getInteger("loadtest.concurrency", config.concurrency);
+        config.warmupRequests = Integer.getInteger("loadtest.warmup", config.warmupRequests);
+        config.requests = Integer.getInteger("loadtest.requests", config.requests);
+        config.latencyMillis = Long.getLong("loadtest.latencyMillis", config.latencyMillis);
+        config.latencyJitterMillis = Long.getLong("loadtest.jitterMillis", config.latencyJitterMillis);
+        config.payloadBytes = Integer.getInteger("loadtest.payloadBytes", config.payloadBytes);
+        config.listSize = Integer.getInteger("loadtest.listSize", config.listSize);
+        config.errorRate = Double.parseDouble(System.getProperty("loadtest.errorRate", String.valueOf(config.errorRate)));
+        return config;
+    }
+
+    @Override
+    public String toString() {
+        return "endpoint=" + endpoint
+                + " concurrency=" + concurrency
+                + " requests=" + requests
+                + " latency=" + latencyMillis + "+" + latencyJitterMillis + "ms"
+                + " payloadBytes=" + payloadBytes
+                + " listSize=" + listSize
+                + " errorRate=" + errorRate;
+    }
+}
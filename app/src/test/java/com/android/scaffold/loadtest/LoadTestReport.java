@@ -0,0 +1,52 @@
+package com.android.scaffold.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测结果：吞吐量、延迟分位数和每个请求的分配字节数
+ */
+class LoadTestReport {
+    final int requests;
+    final int errors;
+    final long elapsedNanos;
+    final long[] latenciesNanos;
+    final long allocatedBytes;
+
+    LoadTestReport(int requests, int errors, long elapsedNanos, long[] latenciesNanos, long allocatedBytes) {
+        this.requests = requests;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.latenciesNanos = latenciesNanos;
+        this.allocatedBytes = allocatedBytes;
+        Arrays.sort(this.latenciesNanos);
+    }
+
+    double requestsPerSecond() {
+        return requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    double percentileMillis(double percentile) {
+        if (latenciesNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * latenciesNanos.length) - 1;
+        index = Math.max(0, Math.min(latenciesNanos.length - 1, index));
+        return latenciesNanos[index] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return 每个请求在调用线程上分配的字节数，JVM不支持统计时为-1
+     */
+    long allocatedBytesPerRequest() {
+        return allocatedBytes < 0 || requests == 0 ? -1 : allocatedBytes / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests=%d errors=%d rps=%.1f p50=%.2fms p95=%.2fms p99=%.2fms alloc/req=%dB",
+                requests, errors, requestsPerSecond(),
+                percentileMillis(0.50), percentileMillis(0.95), percentileMillis(0.99),
+                allocatedBytesPerRequest());
+    }
+}
@@ -0,0 +1,149 @@
+package com.android.scaffold.loadtest;
+
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.http.converter.ContactTypeAdapter;
+import com.android.scaffold.http.converter.JSONResultStreamReader;
+import com.android.scaffold.http.response.base.JSONResult;
+import com.android.scaffold.http.service.PocketMedicalService;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.ResponseBody;
+
+/**
+ * 以固定并发驱动PocketMedicalService，每个工作线程同步执行Rx调用并记录耗时。
+ * 内存分配按除模拟服务端外的全部线程统计，对冲、异步调用在OkHttp线程上的分配也计算在内
+ */
+class LoadTestRunner {
+    private final LoadTestConfig mConfig;
+    private final PocketMedicalService mService;
+    private final ContactTypeAdapter mContactAdapter = new ContactTypeAdapter();
+
+    LoadTestRunner(LoadTestConfig config, PocketMedicalService service) {
+        mConfig = config;
+        mService = service;
+    }
+
+    LoadTestReport run(final int requests) throws InterruptedException {
+        final AtomicInteger remaining = new AtomicInteger(requests);
+        final AtomicInteger errors = new AtomicInteger();
+        final long[][] latencies = new long[mConfig.concurrency][];
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(mConfig.concurrency);
+        //工作线程在统计结束后才退出，退出的线程无法再读取分配量
+        final CountDownLatch exit = new CountDownLatch(1);
+        for (int i = 0; i < mConfig.concurrency; i++) {
+            final int worker = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long[] samples = new long[requests / mConfig.concurrency + 1];
+                    int count = 0;
+                    try {
+                        start.await();
+                        while (remaining.getAndDecrement() > 0) {
+                            long begin = System.nanoTime();
+                            if (!callOnce()) {
+                                errors.incrementAndGet();
+                            }
+                            if (count == samples.length) {
+                                samples = Arrays.copyOf(samples, count * 2);
+                            }
+                            samples[count++] = System.nanoTime() - begin;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        latencies[worker] = Arrays.copyOf(samples, count);
+                        done.countDown();
+                    }
+                    try {
+                        exit.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "loadtest-" + i);
+            thread.start();
+        }
+        Map<Long, Long> allocatedBefore = clientAllocatedBytes();
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        Map<Long, Long> allocatedAfter = clientAllocatedBytes();
+        exit.countDown();
+
+        int total = 0;
+        for (long[] samples : latencies) {
+            total += samples.length;
+        }
+        long[] merged = new long[total];
+        int offset = 0;
+        for (long[] samples : latencies) {
+            System.arraycopy(samples, 0, merged, offset, samples.length);
+            offset += samples.length;
+        }
+        long allocatedBytes = -1;
+        if (allocatedBefore != null && allocatedAfter != null) {
+            allocatedBytes = 0;
+            for (Map.Entry<Long, Long> entry : allocatedAfter.entrySet()) {
+                Long before = allocatedBefore.get(entry.getKey());
+                allocatedBytes += entry.getValue() - (before == null ? 0 : before);
+            }
+        }
+        return new LoadTestReport(total, errors.get(), elapsed, merged, allocatedBytes);
+    }
+
+    private boolean callOnce() {
+        try {
+            if ("contacts".equals(mConfig.endpoint)) {
+                ResponseBody body = mService.getContacts().toBlocking().single();
+                JSONResult<Integer> result = JSONResultStreamReader.read(body, mContactAdapter,
+                        new JSONResultStreamReader.ElementSink<Contact>() {
+                            @Override
+                            public void onElement(Contact element) {
+                            }
+                        });
+                return result.errorcode != null && result.errorcode == 0;
+            }
+            JSONResult<Contact> result = mService.getContact(1L).toBlocking().single();
+            return result.errorcode != null && result.errorcode == 0 && result.data != null;
+        } catch (IOException e) {
+            return false;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 除模拟服务端外每个存活线程累计分配的字节数，依赖HotSpot的com.sun.management.ThreadMXBean
+     *
+     * @return 线程id到分配字节数，不支持时返回null
+     */
+    private static Map<Long, Long> clientAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        long[] ids = bean.getAllThreadIds();
+        ThreadInfo[] infos = bean.getThreadInfo(ids);
+        long[] allocated = ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(ids);
+        Map<Long, Long> result = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (infos[i] == null || allocated[i] < 0 || MockApiServer.isServerThread(infos[i].getThreadName())) {
+                continue;
+            }
+            result.put(ids[i], allocated[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+package com.android.scaffold.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地模拟PocketMedical服务端，可配置延迟、响应大小和错误率
+ */
+class MockApiServer {
+    static final String CONTEXT_PATH = "/PocketMedical/";
+    private static final String THREAD_PREFIX = "mock-api-";
+    /**
+     * JDK HttpServer接收连接的线程名
+     */
+    private static final String DISPATCHER_THREAD = "HTTP-Dispatcher";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final LoadTestConfig mConfig;
+    private final Random mRandom = new Random();
+    private HttpServer mServer;
+    private ExecutorService mExecutor;
+    private byte[] mContactBody;
+    private byte[] mContactsBody;
+
+    MockApiServer(LoadTestConfig config) {
+        mConfig = config;
+    }
+
+    void start() throws IOException {
+        mContactBody = contactJson(1, mConfig.payloadBytes).getBytes(UTF_8);
+        mContactsBody = contactsJson(mConfig.listSize).getBytes(UTF_8);
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext(CONTEXT_PATH + "v1/user/getContact", new FixedBodyHandler(mContactBody));
+        mServer.createContext(CONTEXT_PATH + "v1/user/getContacts", new FixedBodyHandler(mContactsBody));
+        mExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, THREAD_PREFIX + mCount.incrementAndGet());
+            }
+        });
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+    }
+
+    void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * 是否是模拟服务端的线程，统计客户端分配时排除
+     */
+    static boolean isServerThread(String name) {
+        return name.startsWith(THREAD_PREFIX) || name.equals(DISPATCHER_THREAD);
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + CONTEXT_PATH;
+    }
+
+    private static String contactJson(long id, int payloadBytes) {
+        StringBuilder name = new StringBuilder("contact-").append(id);
+        while (name.length() < payloadBytes) {
+            name.append('x');
+        }
+        return "{\"errorcode\":0,\"errormsg\":\"ok\",\"data\":{\"id\":" + id + ",\"name\":\"" + name + "\",\"age\":30}}";
+    }
+
+    private static String contactsJson(int size) {
+        StringBuilder json = new StringBuilder("{\"errorcode\":0,\"errormsg\":\"ok\",\"data\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i + 1).append(",\"name\":\"contact-").append(i + 1).append("\",\"age\":").append(i % 90).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private boolean shouldFail() {
+        synchronized (mRandom) {
+            return mRandom.nextDouble() < mConfig.errorRate;
+        }
+    }
+
+    private long latencyMillis() {
+        if (mConfig.latencyJitterMillis <= 0) {
+            return mConfig.latencyMillis;
+        }
+        synchronized (mRandom) {
+            return mConfig.latencyMillis + mRandom.nextInt((int) mConfig.latencyJitterMillis + 1);
+        }
+    }
+
+    private class FixedBodyHandler implements HttpHandler {
+        private final byte[] mBody;
+
+        FixedBodyHandler(byte[] body) {
+            mBody = body;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                long latency = latencyMillis();
+                if (latency > 0) {
+                    Thread.sleep(latency);
+                }
+                if (shouldFail()) {
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(200, mBody.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(mBody);
+                out.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.android.scaffold.loadtest;
+
+import com.android.scaffold.http.api.PocketMedicalApi;
+import com.android.scaffold.http.interceptor.AimdLimiter;
+import com.android.scaffold.http.interceptor.EndpointLatencies;
+import com.android.scaffold.http.service.PocketMedicalService;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.OkHttpClient;
+
+import static org.junit.Assert.*;
+
+/**
+ * PocketMedicalApi + PocketMedicalService的本地压测，默认跳过，
+ * 通过 ./gradlew :app:testDebugUnitTest -Dloadtest=true 运行，参数见LoadTestConfig
+ */
+public class PocketMedicalLoadTest {
+    private MockApiServer mServer;
+    private OkHttpClient mClient;
+    private LoadTestConfig mConfig;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("loadtest"));
+        mConfig = LoadTestConfig.fromSystemProperties();
+        mServer = new MockApiServer(mConfig);
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (mClient != null) {
+            mClient.dispatcher().executorService().shutdown();
+            mClient.connectionPool().evictAll();
+        }
+        if (mServer != null) {
+            mServer.stop();
+        }
+    }
+
+    @Test
+    public void clientStack() throws Exception {
+        //与生产环境相同的拦截器链，包括鉴权
+        mClient = PocketMedicalApi.getInstance().createClient(new AimdLimiter(), new EndpointLatencies());
+        PocketMedicalService service = PocketMedicalApi.newRetrofit(mServer.baseUrl(), mClient)
+                .create(PocketMedicalService.class);
+        LoadTestRunner runner = new LoadTestRunner(mConfig, service);
+
+        runner.run(mConfig.warmupRequests);
+        LoadTestReport report = runner.run(mConfig.requests);
+
+        System.out.println("[loadtest] " + mConfig);
+        System.out.println("[loadtest] " + report);
+        assertEquals(mConfig.requests, report.requests);
+    }
+}
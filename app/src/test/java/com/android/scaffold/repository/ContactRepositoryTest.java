@@ -0,0 +1,248 @@
+package com.android.scaffold.repository;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.android.scaffold.BuildConfig;
+import com.android.scaffold.db.DatabaseHelper;
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.db.service.ServiceLocator;
+import com.android.scaffold.sync.Change;
+import com.android.scaffold.sync.ChangePage;
+import com.android.scaffold.sync.ChangeSource;
+import com.android.scaffold.sync.DaoSyncTarget;
+import com.android.scaffold.sync.DeltaSyncEngine;
+import com.android.scaffold.sync.PreferencesSyncTokenStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.*;
+
+/**
+ * ContactRepository先返回本地数据再后台刷新，并发读取共享同一次同步，同步失败时保留本地数据
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ContactRepositoryTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private Context mContext;
+    private FakeChangeSource mSource;
+    private ContactRepository mRepository;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mSource = new FakeChangeSource();
+        mRepository = new ContactRepository(mContext) {
+            @Override
+            DeltaSyncEngine<Contact, Long> newSyncEngine() {
+                return new DeltaSyncEngine<>("tb_contact", mSource,
+                        new DaoSyncTarget<>(ServiceLocator.getContactService(mContext)),
+                        new PreferencesSyncTokenStore(mContext));
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        mSource.release();
+        DatabaseHelper.releaseHelper();
+    }
+
+    @Test
+    public void staleData_isEmittedBeforeRefresh() throws Exception {
+        ServiceLocator.getContactService(mContext).create(contact(null, "cached"));
+        mSource.upsert(100L, "fresh");
+
+        TestSubscriber<Integer> first = countContacts();
+        first.assertValues(1, 2);
+        first.assertCompleted();
+        assertEquals(1, mSource.getFetches());
+
+        //有效期内只返回本地数据
+        TestSubscriber<Integer> second = countContacts();
+        second.assertValues(2);
+        assertEquals(1, mSource.getFetches());
+
+        SystemClock.sleep(ContactRepository.MAX_AGE_MILLIS + 1);
+        TestSubscriber<Integer> expired = countContacts();
+        expired.assertValues(2, 2);
+        assertEquals(2, mSource.getFetches());
+    }
+
+    @Test
+    public void concurrentReaders_shareOneSync() throws Exception {
+        mSource.upsert(100L, "fresh");
+        mSource.block();
+
+        TestSubscriber<Integer> refresh = new TestSubscriber<>();
+        mRepository.refresh().subscribeOn(Schedulers.newThread()).subscribe(refresh);
+        assertTrue(mSource.awaitFetch());
+
+        //同步进行中：本地数据立即返回，刷新结果等待同一次同步
+        TestSubscriber<Integer> reader = countContacts();
+        reader.assertValues(0);
+        reader.assertNotCompleted();
+
+        mSource.release();
+        assertTrue(refresh.awaitValueCount(1, TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        reader.awaitTerminalEvent(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        refresh.assertValues(1);
+        reader.assertValues(0, 1);
+        assertEquals(1, mSource.getFetches());
+
+        //上一次同步结束后不再共享
+        TestSubscriber<Integer> again = new TestSubscriber<>();
+        mRepository.refresh().subscribe(again);
+        again.assertValues(1);
+        assertEquals(2, mSource.getFetches());
+    }
+
+    @Test
+    public void failedSync_fallsBackToLocalData() throws Exception {
+        ServiceLocator.getContactService(mContext).create(contact(null, "cached"));
+        mSource.upsert(100L, "fresh");
+        mSource.failWith(new IOException("offline"));
+
+        TestSubscriber<Integer> reader = countContacts();
+        reader.assertValues(1);
+        reader.assertNoErrors();
+        reader.assertCompleted();
+
+        TestSubscriber<Integer> refresh = new TestSubscriber<>();
+        mRepository.refresh().subscribe(refresh);
+        refresh.assertError(IOException.class);
+
+        //失败不算刷新过，下次读取仍会重试
+        mSource.failWith(null);
+        TestSubscriber<Integer> retry = countContacts();
+        retry.assertValues(1, 2);
+        assertEquals(3, mSource.getFetches());
+    }
+
+    @Test
+    public void unsubscribedSync_isNotSharedWithLaterReaders() throws Exception {
+        mSource.upsert(100L, "fresh");
+        mSource.block();
+
+        TestSubscriber<Integer> canceled = new TestSubscriber<>();
+        mRepository.refresh().subscribeOn(Schedulers.newThread()).subscribe(canceled);
+        assertTrue(mSource.awaitFetch());
+        canceled.unsubscribe();
+        mSource.release();
+
+        TestSubscriber<Integer> refresh = new TestSubscriber<>();
+        mRepository.refresh().subscribe(refresh);
+        refresh.assertValues(1);
+        refresh.assertCompleted();
+        assertEquals(2, mSource.getFetches());
+        canceled.assertNoValues();
+    }
+
+    /**
+     * 订阅getContacts()，记录每次发射时本地的联系人数
+     */
+    private TestSubscriber<Integer> countContacts() {
+        TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+        mRepository.getContacts()
+                .map(new Func1<ContactPageSource, Integer>() {
+                    @Override
+                    public Integer call(ContactPageSource source) {
+                        try {
+                            return source.count();
+                        } catch (SQLException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                })
+                .subscribe(subscriber);
+        return subscriber;
+    }
+
+    private static Contact contact(Long id, String name) {
+        Contact contact = new Contact();
+        contact.setId(id);
+        contact.setName(name);
+        return contact;
+    }
+
+    /**
+     * 每次返回全部upsert的单页变更，可以阻塞在拉取中或让拉取失败
+     */
+    private static class FakeChangeSource implements ChangeSource<Contact, Long> {
+        private final List<Contact> mContacts = new ArrayList<>();
+        private final AtomicInteger mFetches = new AtomicInteger();
+        private final CountDownLatch mFetching = new CountDownLatch(1);
+        private volatile CountDownLatch mGate;
+        private volatile IOException mFailure;
+
+        void upsert(long id, String name) {
+            mContacts.add(contact(id, name));
+        }
+
+        void block() {
+            mGate = new CountDownLatch(1);
+        }
+
+        void release() {
+            CountDownLatch gate = mGate;
+            if (gate != null) {
+                gate.countDown();
+            }
+        }
+
+        void failWith(IOException failure) {
+            mFailure = failure;
+        }
+
+        boolean awaitFetch() throws InterruptedException {
+            return mFetching.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        int getFetches() {
+            return mFetches.get();
+        }
+
+        @Override
+        public ChangePage<Contact, Long> fetchChanges(String token, int limit) throws IOException {
+            int fetch = mFetches.incrementAndGet();
+            mFetching.countDown();
+            CountDownLatch gate = mGate;
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("fetch interrupted");
+                }
+            }
+            if (mFailure != null) {
+                throw mFailure;
+            }
+            List<Change<Contact, Long>> changes = new ArrayList<>(mContacts.size());
+            for (Contact contact : mContacts) {
+                changes.add(Change.<Contact, Long>upsert(contact(contact.getId(), contact.getName())));
+            }
+            return new ChangePage<>(changes, String.valueOf(fetch), false);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.android.scaffold.startup;
+
+import com.android.scaffold.BuildConfig;
+import com.android.scaffold.MyApplication;
+import com.android.scaffold.ui.main.activity.MainActivity;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ActivityController;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在JVM上重复执行冷启动路径，按阶段输出耗时中位数，
+ * 与startup-budgets.properties中的预算比较，超出预算视为回归。
+ * 墙钟耗时受机器负载影响，默认跳过，-Dstartupbenchmark=true 开启
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class StartupBenchmarkTest {
+    private static final int ITERATIONS = 10;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Boolean.getBoolean("startupbenchmark"));
+    }
+
+    @Test
+    public void coldStart_phasesWithinBudget() throws Exception {
+        Map<String, List<Long>> samples = new HashMap<>();
+        //Robolectric每个测试只创建一次Application，这里先收集Application阶段
+        collect(samples);
+        StartupTracer.reset();
+        DeferredInitializer.runPending();
+        waitForPhase(MyApplication.PHASE_WARM_HTTP);
+        collect(samples);
+        for (int i = 0; i < ITERATIONS; i++) {
+            StartupTracer.reset();
+            ActivityController<MainActivity> controller = Robolectric.buildActivity(MainActivity.class)
+                    .create().start().resume().visible();
+            collect(samples);
+            controller.pause().stop().destroy();
+        }
+
+        Properties budgets = loadBudgets();
+        List<String> regressions = new ArrayList<>();
+        List<String> medians = new ArrayList<>();
+        for (String phase : budgets.stringPropertyNames()) {
+            List<Long> phaseSamples = samples.get(phase);
+            if (phaseSamples == null) {
+                regressions.add(phase + ": not traced");
+                continue;
+            }
+            long medianMillis = TimeUnit.NANOSECONDS.toMillis(median(phaseSamples));
+            long budgetMillis = Long.parseLong(budgets.getProperty(phase));
+            medians.add(phase + "=" + medianMillis + "ms/" + budgetMillis + "ms");
+            if (medianMillis > budgetMillis) {
+                regressions.add(phase + ": " + medianMillis + "ms > " + budgetMillis + "ms");
+            }
+        }
+        //通过时也输出，写入测试报告的标准输出，便于对比各次运行
+        System.out.println("[startupbenchmark] medians: " + medians);
+        assertTrue("startup regressions: " + regressions + " medians: " + medians, regressions.isEmpty());
+    }
+
+    private static void collect(Map<String, List<Long>> samples) {
+        for (Map.Entry<String, Long> entry : StartupTracer.getPhases().entrySet()) {
+            List<Long> list = samples.get(entry.getKey());
+            if (list == null) {
+                list = new ArrayList<>();
+                samples.put(entry.getKey(), list);
+            }
+            list.add(entry.getValue());
+        }
+    }
+
+    /**
+     * 等待后台执行的延迟初始化完成
+     */
+    private static void waitForPhase(String phase) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!StartupTracer.getPhases().containsKey(phase) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private Properties loadBudgets() throws Exception {
+        Properties properties = new Properties();
+        InputStream in = getClass().getClassLoader().getResourceAsStream("startup-budgets.properties");
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,102 @@
+package com.android.scaffold.sync;
+
+import com.android.scaffold.BuildConfig;
+import com.android.scaffold.db.DatabaseHelper;
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.db.service.ContactService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * DeltaSyncEngine通过DaoSyncTarget写入真实数据库，服务端id不从1开始
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DaoSyncTargetTest {
+    private MockChangeServer mServer;
+    private ContactService mService;
+    private DeltaSyncEngine<Contact, Long> mEngine;
+
+    @Before
+    public void setUp() {
+        mServer = new MockChangeServer();
+        mService = new ContactService(RuntimeEnvironment.application);
+        mEngine = new DeltaSyncEngine<>("tb_contact", mServer, new DaoSyncTarget<>(mService),
+                new PreferencesSyncTokenStore(RuntimeEnvironment.application), 4, 3);
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseHelper.releaseHelper();
+    }
+
+    @Test
+    public void serverIds_areStoredAsGiven() throws Exception {
+        for (long id = 1001; id <= 1010; id++) {
+            mServer.upsert(id, "name" + id, (int) (id % 100));
+        }
+        mServer.delete(1003L);
+        mServer.upsert(1005L, "renamed", 50);
+
+        mEngine.sync();
+
+        assertEquals(mServer.getState().keySet(), localIds());
+        assertEquals("renamed", mService.queryById(1005L).getName());
+        assertNull(mService.queryById(1003L));
+
+        mServer.delete(1007L);
+        mServer.upsert(1003L, "back", 3);
+        mEngine.sync();
+
+        assertEquals(mServer.getState().keySet(), localIds());
+        assertEquals("back", mService.queryById(1003L).getName());
+    }
+
+    @Test
+    public void localCreate_stillGeneratesId() throws Exception {
+        mServer.upsert(500L, "server", 1);
+        mEngine.sync();
+
+        Contact local = new Contact();
+        local.setName("local");
+        mService.create(local);
+
+        assertNotNull(local.getId());
+        assertTrue(local.getId() > 500L);
+        assertEquals("server", mService.queryById(500L).getName());
+    }
+
+    @Test
+    public void delete_removesArchivedRow() throws Exception {
+        mServer.upsert(700L, "cold", 1);
+        mServer.upsert(701L, "warm", 2);
+        mEngine.sync();
+        mService.archive(Contact.COLUMN_UPDATED_AT, Long.MAX_VALUE, 10);
+        assertEquals(2, mService.count(true));
+
+        mServer.delete(700L);
+        mEngine.sync();
+
+        assertEquals(1, mService.count(true));
+        assertEquals(Long.valueOf(701L), mService.queryAll(true).get(0).getId());
+    }
+
+    private Set<Long> localIds() throws Exception {
+        Set<Long> ids = new TreeSet<>();
+        for (Contact contact : mService.queryAll()) {
+            ids.add(contact.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,157 @@
+package com.android.scaffold.sync;
+
+import com.android.scaffold.db.entity.Contact;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * DeltaSyncEngine在模拟服务端上的同步、增量与中断续传
+ */
+public class DeltaSyncEngineTest {
+    private MockChangeServer mServer;
+    private MemoryTarget mTarget;
+    private MemoryTokenStore mTokenStore;
+    private DeltaSyncEngine<Contact, Long> mEngine;
+
+    @Before
+    public void setUp() {
+        mServer = new MockChangeServer();
+        mTarget = new MemoryTarget();
+        mTokenStore = new MemoryTokenStore();
+        mEngine = new DeltaSyncEngine<>("tb_contact", mServer, mTarget, mTokenStore, 10, 4);
+    }
+
+    @Test
+    public void initialSync_appliesAllChanges() throws Exception {
+        for (long i = 1; i <= 25; i++) {
+            mServer.upsert(i, "name" + i, (int) i);
+        }
+        mServer.delete(3L);
+
+        SyncStats stats = mEngine.sync();
+
+        assertEquals(3, stats.getPages());
+        assertEquals(25, stats.getUpserts());
+        assertEquals(1, stats.getDeletes());
+        assertEquals(mServer.getState().keySet(), mTarget.mRows.keySet());
+        assertEquals("26", mTokenStore.getToken("tb_contact"));
+    }
+
+    @Test
+    public void secondSync_fetchesOnlyNewChanges() throws Exception {
+        for (long i = 1; i <= 5; i++) {
+            mServer.upsert(i, "name" + i, (int) i);
+        }
+        mEngine.sync();
+        mServer.upsert(2L, "renamed", 40);
+        mServer.delete(4L);
+
+        SyncStats stats = mEngine.sync();
+
+        assertEquals(1, stats.getUpserts());
+        assertEquals(1, stats.getDeletes());
+        assertEquals("renamed", mTarget.mRows.get(2L).getName());
+        assertFalse(mTarget.mRows.containsKey(4L));
+    }
+
+    @Test
+    public void interruptedSync_resumesFromLastCommittedPage() throws Exception {
+        for (long i = 1; i <= 30; i++) {
+            mServer.upsert(i, "name" + i, (int) i);
+        }
+        mServer.failOnFetch(2);
+        try {
+            mEngine.sync();
+            fail("expected IOException");
+        } catch (IOException expected) {
+            assertEquals("20", mTokenStore.getToken("tb_contact"));
+        }
+
+        SyncStats stats = mEngine.sync();
+
+        assertEquals(1, stats.getPages());
+        assertEquals(10, stats.getUpserts());
+        assertEquals(mServer.getState().keySet(), mTarget.mRows.keySet());
+        assertEquals(4, mServer.getFetches());
+    }
+
+    @Test
+    public void chunks_areBounded() throws Exception {
+        for (long i = 1; i <= 10; i++) {
+            mServer.upsert(i, "name" + i, (int) i);
+        }
+        mEngine.sync();
+        assertTrue(mTarget.mMaxChunk <= 4);
+    }
+
+    @Test
+    public void deleteThenRecreate_inOnePage_keepsRecord() throws Exception {
+        mServer.upsert(7L, "first", 1);
+        mServer.delete(7L);
+        mServer.upsert(7L, "second", 2);
+        mServer.upsert(8L, "kept", 3);
+        mServer.delete(8L);
+
+        mEngine.sync();
+
+        assertEquals("second", mTarget.mRows.get(7L).getName());
+        assertFalse(mTarget.mRows.containsKey(8L));
+        assertEquals(mServer.getState().keySet(), mTarget.mRows.keySet());
+    }
+
+    @Test
+    public void hasMoreWithoutNewToken_failsInsteadOfLooping() throws Exception {
+        for (long i = 1; i <= 25; i++) {
+            mServer.upsert(i, "name" + i, (int) i);
+        }
+        mServer.stallToken();
+        try {
+            mEngine.sync();
+            fail("expected IOException");
+        } catch (IOException expected) {
+            assertEquals(1, mServer.getFetches());
+            assertNull(mTokenStore.getToken("tb_contact"));
+        }
+    }
+
+    private static class MemoryTarget implements SyncTarget<Contact, Long> {
+        private final Map<Long, Contact> mRows = new TreeMap<>();
+        private int mMaxChunk;
+
+        @Override
+        public void applyChunk(List<Change<Contact, Long>> changes) throws SQLException {
+            mMaxChunk = Math.max(mMaxChunk, changes.size());
+            for (Change<Contact, Long> change : changes) {
+                if (change.isDelete()) {
+                    mRows.remove(change.getId());
+                } else {
+                    mRows.put(change.getEntity().getId(), change.getEntity());
+                }
+            }
+        }
+    }
+
+    private static class MemoryTokenStore implements SyncTokenStore {
+        private final Map<String, String> mTokens = new HashMap<>();
+
+        @Override
+        public String getToken(String entity) {
+            return mTokens.get(entity);
+        }
+
+        @Override
+        public void putToken(String entity, String token) {
+            mTokens.put(entity, token);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.android.scaffold.sync;
+
+import com.android.scaffold.db.entity.Contact;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模拟服务端的变更日志，token为已读取的日志位置，可注入一次性失败
+ */
+class MockChangeServer implements ChangeSource<Contact, Long> {
+    private final List<Change<Contact, Long>> mLog = new ArrayList<>();
+    private final Map<Long, Contact> mState = new LinkedHashMap<>();
+    private int mFailOnFetch = -1;
+    private boolean mStallToken;
+    private int mFetches;
+
+    void upsert(long id, String name, int age) {
+        Contact contact = new Contact();
+        contact.setId(id);
+        contact.setName(name);
+        contact.setAge(age);
+        mState.put(id, contact);
+        mLog.add(Change.<Contact, Long>upsert(contact));
+    }
+
+    void delete(long id) {
+        mState.remove(id);
+        mLog.add(Change.<Contact, Long>delete(id));
+    }
+
+    void failOnFetch(int fetchIndex) {
+        mFailOnFetch = fetchIndex;
+    }
+
+    /**
+     * 之后的请求原样返回请求中的token并声称还有数据
+     */
+    void stallToken() {
+        mStallToken = true;
+    }
+
+    Map<Long, Contact> getState() {
+        return mState;
+    }
+
+    int getFetches() {
+        return mFetches;
+    }
+
+    @Override
+    public ChangePage<Contact, Long> fetchChanges(String token, int limit) throws IOException {
+        int fetch = mFetches++;
+        if (fetch == mFailOnFetch) {
+            mFailOnFetch = -1;
+            throw new IOException("connection reset");
+        }
+        int from = token == null ? 0 : Integer.parseInt(token);
+        int to = Math.min(from + limit, mLog.size());
+        List<Change<Contact, Long>> changes = new ArrayList<>(mLog.subList(from, to));
+        if (mStallToken) {
+            return new ChangePage<>(changes, token, true);
+        }
+        return new ChangePage<>(changes, String.valueOf(to), to < mLog.size());
+    }
+}
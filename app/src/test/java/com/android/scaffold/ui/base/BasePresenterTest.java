@@ -0,0 +1,172 @@
+package com.android.scaffold.ui.base;
+
+import com.android.scaffold.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Action1;
+
+import static org.junit.Assert.*;
+
+/**
+ * BasePresenter解绑时取消未完成的请求，同一key的新请求取消旧请求
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class BasePresenterTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final List<String> mDelivered = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    private TestPresenter mPresenter;
+
+    @Before
+    public void setUp() {
+        //主线程回调只在runUiThreadTasks时执行，保证取消发生在结果送达之前
+        ShadowLooper.pauseMainLooper();
+        mPresenter = new TestPresenter();
+        mPresenter.attachView(new Object());
+    }
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+    }
+
+    @Test
+    public void detachView_cancelsPendingRequests() throws Exception {
+        PendingSource first = new PendingSource("first");
+        PendingSource second = new PendingSource("second");
+        mPresenter.load("first", first.observable());
+        mPresenter.load("second", second.observable());
+        first.awaitStarted();
+        second.awaitStarted();
+
+        mPresenter.detachView();
+
+        first.awaitUnsubscribed();
+        second.awaitUnsubscribed();
+        mRelease.countDown();
+        runUiThreadTasksFor(200);
+        assertTrue(mDelivered.isEmpty());
+
+        //重新绑定后可以继续发起请求
+        mPresenter.attachView(new Object());
+        mPresenter.load("first", Observable.just("again"));
+        awaitDelivered(1);
+        assertEquals(Collections.singletonList("again"), mDelivered);
+    }
+
+    @Test
+    public void sameKey_unsubscribesOlderRequest() throws Exception {
+        PendingSource older = new PendingSource("older");
+        PendingSource otherKey = new PendingSource("other");
+        mPresenter.load("contacts", older.observable());
+        mPresenter.load("other", otherKey.observable());
+        older.awaitStarted();
+        otherKey.awaitStarted();
+
+        mPresenter.load("contacts", Observable.just("newer"));
+
+        older.awaitUnsubscribed();
+        assertFalse(otherKey.isUnsubscribed());
+        awaitDelivered(1);
+        mRelease.countDown();
+        awaitDelivered(2);
+        runUiThreadTasksFor(200);
+
+        //旧请求即使在之后拿到结果也不会回调
+        assertEquals(2, mDelivered.size());
+        assertTrue(mDelivered.contains("newer"));
+        assertTrue(mDelivered.contains("other"));
+        assertFalse(mDelivered.contains("older"));
+    }
+
+    private void awaitDelivered(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (mDelivered.size() < count && System.currentTimeMillis() < deadline) {
+            runUiThreadTasksFor(10);
+        }
+        assertTrue("expected " + count + " results, got " + mDelivered, mDelivered.size() >= count);
+    }
+
+    private static void runUiThreadTasksFor(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        do {
+            ShadowLooper.runUiThreadTasks();
+            Thread.sleep(5);
+        } while (System.currentTimeMillis() < deadline);
+    }
+
+    private class TestPresenter extends BasePresenter<Object> {
+        void load(String key, Observable<String> source) {
+            execute(key, source, new Action1<String>() {
+                @Override
+                public void call(String value) {
+                    mDelivered.add(value);
+                }
+            }, new Action1<Throwable>() {
+                @Override
+                public void call(Throwable throwable) {
+                    mDelivered.add("error: " + throwable);
+                }
+            });
+        }
+    }
+
+    /**
+     * 在io线程阻塞到mRelease打开才返回结果，记录开始和被取消
+     */
+    private class PendingSource {
+        private final String mValue;
+        private final CountDownLatch mStarted = new CountDownLatch(1);
+        private final CountDownLatch mUnsubscribed = new CountDownLatch(1);
+
+        PendingSource(String value) {
+            mValue = value;
+        }
+
+        Observable<String> observable() {
+            return Observable.fromCallable(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    mStarted.countDown();
+                    mRelease.await();
+                    return mValue;
+                }
+            }).doOnUnsubscribe(new Action0() {
+                @Override
+                public void call() {
+                    mUnsubscribed.countDown();
+                }
+            });
+        }
+
+        void awaitStarted() throws InterruptedException {
+            assertTrue(mStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        }
+
+        void awaitUnsubscribed() throws InterruptedException {
+            assertTrue(mValue + " was not unsubscribed", mUnsubscribed.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        }
+
+        boolean isUnsubscribed() {
+            return mUnsubscribed.getCount() == 0;
+        }
+    }
+}
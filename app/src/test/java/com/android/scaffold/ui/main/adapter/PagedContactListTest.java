@@ -0,0 +1,196 @@
+package com.android.scaffold.ui.main.adapter;
+
+import com.android.scaffold.BuildConfig;
+import com.android.scaffold.db.entity.Contact;
+import com.android.scaffold.repository.ContactPageSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * PagedContactList.diff按位置比较同一页新旧数据得到的变化区间，快速滑动时跳过已离开的页
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class PagedContactListTest {
+    private static final int PAGES = 20;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private static Contact contact(long id, String name, Integer age) {
+        Contact contact = new Contact();
+        contact.setId(id);
+        contact.setName(name);
+        contact.setAge(age);
+        return contact;
+    }
+
+    private static List<Contact> page(int size) {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            contacts.add(contact(i, "name" + i, i));
+        }
+        return contacts;
+    }
+
+    @Test
+    public void identicalPages_haveNoChanges() {
+        assertArrayEquals(new int[0], PagedContactList.diff(page(10), page(10)));
+        assertArrayEquals(new int[0], PagedContactList.diff(Collections.<Contact>emptyList(),
+                Collections.<Contact>emptyList()));
+    }
+
+    @Test
+    public void changedFields_formMergedRanges() {
+        List<Contact> updated = page(10);
+        updated.set(2, contact(2, "renamed", 2));
+        updated.set(3, contact(3, "name3", null));
+        updated.set(7, contact(70, "name7", 7));
+        assertArrayEquals(new int[]{2, 2, 7, 1}, PagedContactList.diff(page(10), updated));
+    }
+
+    @Test
+    public void lengthChanges_reportTail() {
+        assertArrayEquals(new int[]{6, 4}, PagedContactList.diff(page(6), page(10)));
+        assertArrayEquals(new int[]{6, 4}, PagedContactList.diff(page(10), page(6)));
+        assertArrayEquals(new int[]{0, 3}, PagedContactList.diff(Collections.<Contact>emptyList(), page(3)));
+    }
+
+    @Test
+    public void changeAtEnd_isClosed() {
+        List<Contact> updated = new ArrayList<>(page(5));
+        updated.set(4, contact(4, "last", 4));
+        assertArrayEquals(new int[]{4, 1}, PagedContactList.diff(page(5), updated));
+        assertArrayEquals(new int[]{0, 5}, PagedContactList.diff(page(5),
+                Arrays.asList(contact(9, "a", 1), contact(8, "b", 1), contact(7, "c", 1),
+                        contact(6, "d", 1), contact(5, "e", 1))));
+    }
+
+    @Test
+    public void fling_skipsPagesLeftBehind() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        RecordingSource source = new RecordingSource(PAGES * PagedContactList.PAGE_SIZE);
+        PagedContactList list = new PagedContactList(new NoOpCallback());
+        try {
+            //count阻塞住后台线程，期间滑过的每一页都排队
+            list.submit(source);
+            for (int page = 0; page < PAGES; page++) {
+                list.get(page * PagedContactList.PAGE_SIZE);
+            }
+            source.release();
+
+            source.awaitLoaded(PAGES - 1);
+            assertEquals(Arrays.asList(PAGES - 3, PAGES - 2, PAGES - 1), source.loadedPages());
+
+            //跳过的页不再标记为加载中，回到那里时重新加载
+            ShadowLooper.runUiThreadTasks();
+            assertNull(list.get(5 * PagedContactList.PAGE_SIZE));
+            source.awaitLoaded(5);
+            awaitLoadedOnMain(list, 5 * PagedContactList.PAGE_SIZE);
+        } finally {
+            source.release();
+            list.release();
+        }
+    }
+
+    private static void awaitLoadedOnMain(PagedContactList list, int position) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (list.get(position) == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+            ShadowLooper.runUiThreadTasks();
+        }
+        Contact contact = list.get(position);
+        assertNotNull(contact);
+        assertEquals(Long.valueOf(position), contact.getId());
+    }
+
+    private static class NoOpCallback implements PagedContactList.Callback {
+        @Override
+        public void onInserted(int position, int count) {
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+        }
+    }
+
+    /**
+     * id等于位置的数据源，count在release前阻塞，记录实际查询过的页
+     */
+    private static class RecordingSource implements ContactPageSource {
+        private final int mCount;
+        private final CountDownLatch mGate = new CountDownLatch(1);
+        private final List<Integer> mLoaded = new ArrayList<>();
+
+        RecordingSource(int count) {
+            mCount = count;
+        }
+
+        void release() {
+            mGate.countDown();
+        }
+
+        synchronized List<Integer> loadedPages() {
+            return new ArrayList<>(mLoaded);
+        }
+
+        synchronized void awaitLoaded(int page) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (!mLoaded.contains(page) && System.currentTimeMillis() < deadline) {
+                wait(10);
+            }
+            assertTrue("page " + page + " not loaded: " + mLoaded, mLoaded.contains(page));
+        }
+
+        @Override
+        public int count() throws SQLException {
+            try {
+                mGate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(e);
+            }
+            return mCount;
+        }
+
+        @Override
+        public List<Contact> loadAfter(Long afterId, int limit) {
+            return load(afterId == null ? 0 : (int) (afterId + 1), limit);
+        }
+
+        @Override
+        public List<Contact> loadBefore(long beforeId, int limit) {
+            return load((int) Math.max(0, beforeId - limit), limit);
+        }
+
+        @Override
+        public List<Contact> loadPage(int offset, int limit) {
+            return load(offset, limit);
+        }
+
+        private synchronized List<Contact> load(int offset, int limit) {
+            mLoaded.add(offset / PagedContactList.PAGE_SIZE);
+            notifyAll();
+            List<Contact> contacts = new ArrayList<>();
+            for (int i = offset; i < Math.min(mCount, offset + limit); i++) {
+                contacts.add(contact(i, "name" + i, i));
+            }
+            return contacts;
+        }
+    }
+}